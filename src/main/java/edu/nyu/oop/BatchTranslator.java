@@ -0,0 +1,204 @@
+/**
+ * Batch translation, started with Boot -batch followed by a directory or a list file
+ * a directory is searched for Java files declaring a main method, a list file names one Java
+ * file per line, blank lines and lines starting with # are skipped
+ * every input is translated by its own Boot on a pool of batch.threads threads, into its own
+ * subdirectory of output.location named after the path of the input, relative to the directory
+ * or, for list files, to the project root, for example output/test000/Test000/ for
+ * src/test/java/inputs/test000/Test000.java
+ * the result of every input, its status and time, is printed as a summary at the end
+ *
+ * @version 1.0
+ */
+
+package edu.nyu.oop;
+
+import edu.nyu.oop.util.XtcProps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+public class BatchTranslator {
+
+    private static final Pattern MAIN = Pattern.compile("\\bvoid\\s+main\\s*\\(\\s*String");
+
+    private final String outputLocation;
+    private final int threads;
+
+    /**
+     * Result of translating one input
+     */
+    public static class Result {
+        public final File source;
+        public final String outputLocation;
+        public final boolean ok;
+        public final long millis;
+
+        Result(File source, String outputLocation, boolean ok, long millis) {
+            this.source = source;
+            this.outputLocation = outputLocation;
+            this.ok = ok;
+            this.millis = millis;
+        }
+    }
+
+    public BatchTranslator() {
+        this(XtcProps.get("output.location"), XtcProps.getInt("batch.threads", 0));
+    }
+
+    /**
+     * @param outputLocation directory the subdirectories of the inputs are created in, ending with a slash
+     * @param threads number of inputs translated at the same time, 0 for one per available processor
+     */
+    public BatchTranslator(String outputLocation, int threads) {
+        this.outputLocation = outputLocation;
+        this.threads = threads > 0 ? threads : java.lang.Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Finds the inputs named by a directory or a list file
+     *
+     * @param input directory or list file
+     * @return inputs, sorted by path
+     */
+    public static List<File> inputs(File input) throws IOException {
+        List<File> inputs = new ArrayList<File>();
+
+        if (input.isDirectory()) {
+            findMains(input, inputs);
+        } else {
+            for (String line : Files.readAllLines(input.toPath(), Charset.defaultCharset())) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) inputs.add(new File(line));
+            }
+        }
+
+        Collections.sort(inputs);
+        return inputs;
+    }
+
+    private static void findMains(File directory, List<File> inputs) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                findMains(file, inputs);
+            } else if (file.getName().endsWith(".java")
+                       && MAIN.matcher(new String(Files.readAllBytes(file.toPath()))).find()) {
+                inputs.add(file);
+            }
+        }
+    }
+
+    /**
+     * Translates every input, each into its own subdirectory of the output location
+     *
+     * @param root directory the subdirectory names are relative to
+     * @param inputs Java files to translate
+     * @return results, in the order of the inputs
+     */
+    public List<Result> translate(File root, List<File> inputs) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (final File source : inputs) {
+                final String location = outputLocation + subdirectory(root, source);
+
+                futures.add(pool.submit(new Callable<Result>() {
+                    public Result call() {
+                        return translate(source, location);
+                    }
+                }));
+            }
+
+            List<Result> results = new ArrayList<Result>();
+            for (Future<Result> future : futures) results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while translating.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to translate.", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Result translate(File source, String location) {
+        long start = System.currentTimeMillis();
+        boolean ok;
+
+        new File(location).mkdirs();
+        Boot boot = new Boot();
+        try {
+            boot.run(new String[] {"-no-exit", "-silent", "-output", location, "-translate", source.getPath()});
+            ok = !boot.failed();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            ok = false;
+        }
+        return new Result(source, location, ok, System.currentTimeMillis() - start);
+    }
+
+    // path of the source relative to root, without the .java extension, ending with a slash
+    private static String subdirectory(File root, File source) {
+        String path = root.getAbsoluteFile().toPath().normalize()
+                      .relativize(source.getAbsoluteFile().toPath().normalize()).toString();
+        if (path.endsWith(".java")) path = path.substring(0, path.length() - ".java".length());
+        return path.replace(File.separatorChar, '/') + "/";
+    }
+
+    /**
+     * Prints one line per input and the totals
+     *
+     * @param results results of translate
+     * @param wallMillis time the whole batch took
+     * @param out stream to print to
+     */
+    public void printSummary(List<Result> results, long wallMillis, PrintStream out) {
+        int failed = 0;
+        out.println();
+        for (Result result : results) {
+            if (!result.ok) failed++;
+            out.println(String.format("%-6s %7d ms  %s -> %s", result.ok ? "ok" : "FAILED",
+                                      result.millis, result.source.getPath(), result.outputLocation));
+        }
+        out.println(String.format("%d translated, %d failed in %d ms on %d threads",
+                                  results.size() - failed, failed, wallMillis, threads));
+        out.flush();
+    }
+
+    /**
+     * Runs a batch and prints its summary
+     *
+     * @param input directory or list file
+     * @return true if every input was translated
+     */
+    public boolean run(File input) {
+        try {
+            File root = input.isDirectory() ? input : new File(System.getProperty("user.dir"));
+            long start = System.currentTimeMillis();
+            List<Result> results = translate(root, inputs(input));
+            printSummary(results, System.currentTimeMillis() - start, System.out);
+
+            for (Result result : results) {
+                if (!result.ok) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read batch input " + input, e);
+        }
+    }
+}
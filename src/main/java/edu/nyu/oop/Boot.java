@@ -4,13 +4,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.HashMap;
+import java.util.Set;
 
 
 import edu.nyu.oop.util.JavaFiveImportParser;
 import edu.nyu.oop.util.NodeUtil;
+import edu.nyu.oop.util.Profiler;
 import edu.nyu.oop.util.SymbolTableBuilder;
 import edu.nyu.oop.util.XtcProps;
 import org.slf4j.Logger;
@@ -41,6 +40,9 @@ public class Boot extends Tool {
     private Logger logger =
         org.slf4j.LoggerFactory.getLogger(this.getClass());
 
+    // set by -profile for the duration of a run
+    private Profiler profiler;
+
     @Override
     public String getName() {
         return XtcProps.get("app.name");
@@ -51,6 +53,21 @@ public class Boot extends Tool {
         return XtcProps.get("group.name");
     }
 
+    @Override
+    public String getExplanation() {
+        return "Run with -server as the only argument to keep the translator running and read one "
+               + "command line per line of standard input, see TranslationServer. "
+               + "Run with -batch <directory or list file> to translate many inputs at once, "
+               + "see BatchTranslator.";
+    }
+
+    /**
+     * @return true if any error was reported while running
+     */
+    public boolean failed() {
+        return runtime.seenError();
+    }
+
     @Override
     public void init() {
         super.init();
@@ -69,7 +86,10 @@ public class Boot extends Tool {
         bool("printPhase4", "printPhase4", false, "Print the output of phase 4").
         bool("printPhase5", "printPhase5", false, "Print the output of phase 5").
         bool("printMangling", "printMangling", false, "Print a method mangling test").
-        bool("translate", "translate", false, "Translate an input file");
+        bool("translate", "translate", false, "Translate an input file").
+        bool("sharded", "sharded", false, "Translate into one header and source file per class and a Makefile.").
+        word("output", "outputLocation", false, "Write C++ files into the given directory instead of output.location.").
+        bool("profile", "profile", false, "Print the time and allocations of every phase and write them to profile.json.");
     }
 
     @Override
@@ -77,7 +97,21 @@ public class Boot extends Tool {
         super.prepare();
         // Perform consistency checks on command line arguments.
         // (i.e. are there some commands that cannot be run together?)
-        logger.debug("This is a debugging statement."); // Example logging statement, you may delete
+
+        // a Boot may run on a thread that ran another Boot before, so always replace the profiler
+        profiler = runtime.test("profile") ? new Profiler() : null;
+        Profiler.setCurrent(profiler);
+    }
+
+    @Override
+    public void wrapUp() {
+        if (profiler == null) return;
+
+        Profiler.setCurrent(null);
+        profiler.printTable(runtime.console());
+        File json = new File(outputLocation() + "profile.json");
+        profiler.writeJson(json);
+        logger.info("Wrote profile to " + json);
     }
 
     @Override
@@ -135,142 +169,49 @@ public class Boot extends Tool {
             new SymbolTablePrinter(runtime, table).full();
         }
 
-        if (runtime.test("printPhase1")) {
-            List<GNode> javaAsts = Phase1.parse(n);
-            HashMap<String, ArrayList<Phase1.Initializer>> inits = new HashMap<String, ArrayList<Phase1.Initializer>>();
-            LinkedList<SymbolTable> tables = new LinkedList<SymbolTable>();
-
-            for (GNode unmangledAst : javaAsts) {
-                SymbolTable table = new SymbolTableBuilder(runtime).getTable(unmangledAst);
-                inits.putAll(Phase1.mangle(runtime, table, unmangledAst));
-                tables.add(table);
-            }
+        // every phase below shares the ASTs, symbol tables and maps of one session
+        TranslationSession session = new TranslationSession(runtime, n);
 
-            for (GNode node : javaAsts) {
+        // both print the mangled ASTs with their dead code, Phase 2 removes it from them in place
+        if (runtime.test("printPhase1")) {
+            for (GNode node : session.getMangledAsts()) {
                 runtime.console().format(node).pln().flush();
             }
         }
 
         if (runtime.test("printPhase2")) {
-            List<GNode> javaAsts = Phase1.parse(n);
-            HashMap<String, ArrayList<Phase1.Initializer>> inits = new HashMap<String, ArrayList<Phase1.Initializer>>();
-            LinkedList<SymbolTable> tables = new LinkedList<SymbolTable>();
-
-            for (GNode unmangledAst : javaAsts) {
-                SymbolTable table = new SymbolTableBuilder(runtime).getTable(unmangledAst);
-                inits.putAll(Phase1.mangle(runtime, table, unmangledAst));
-                tables.add(table);
-            }
-
-            ArrayList<Node> cppAsts = new ArrayList<Node>();
-            HashMap<String, String> childrenToParents = new HashMap<String, String>();
-
-            for (Node javaAst : javaAsts) {
-                Phase2 phase2 = new Phase2();
-                Node cppAst = phase2.runPhase2(javaAst);
-                cppAsts.add(cppAst);
-                childrenToParents.putAll(phase2.childrenToParents);
-            }
-
-            for (GNode cppAst : javaAsts) {
+            for (GNode cppAst : session.getMangledAsts()) {
                 runtime.console().format(cppAst).pln().flush();
             }
+
+            session.getCppAsts();
         }
 
         if (runtime.test("printPhase3")) {
-            // phase 1
-            List<GNode> javaAsts = Phase1.parse(n);
-
-            // phase 2
-            // below is for single javaAst, we can parse multiple ones too just need to change logic for Phase 3 printer
-            // Node cppAst = Phase2.runPhase2(javaAsts.get(0));
-
-            ArrayList<Node> cppAsts = new ArrayList<Node>();
-            for (Node javaAst : javaAsts) {
-                Node cppAst = Phase2.runPhase2(javaAst);
-                cppAsts.add(cppAst);
+            for (Node cppAst : session.getCppAsts()) {
                 runtime.console().format(cppAst).pln().flush();
             }
 
-            Phase3 phase3 = new Phase3();
-            // below is again for single ast
-            // phase3.print((GNode) cppAst);
-            // phase 3
-            for (Node cppAst : cppAsts) {
+            Phase3 phase3 = new Phase3(outputLocation());
+            for (Node cppAst : session.getCppAsts()) {
                 phase3.print((GNode) cppAst);
             }
+            phase3.close();
         }
 
         if (runtime.test("printPhase4")) {
-
-            List<GNode> javaAsts = Phase1.parse(n);
-            HashMap<String, ArrayList<Phase1.Initializer>> inits = new HashMap<String, ArrayList<Phase1.Initializer>>();
-            LinkedList<SymbolTable> tables = new LinkedList<SymbolTable>();
-
-            for (GNode unmangledAst : javaAsts) {
-                SymbolTable table = new SymbolTableBuilder(runtime).getTable(unmangledAst);
-                inits.putAll(Phase1.mangle(runtime, table, unmangledAst));
-                tables.add(table);
-            }
-
-            ArrayList<Node> cppAsts = new ArrayList<Node>();
-            HashMap<String, String> childrenToParents = new HashMap<String, String>();
-
-            for (Node javaAst : javaAsts) {
-                Phase2 phase2 = new Phase2();
-                Node cppAst = phase2.runPhase2(javaAst);
-                cppAsts.add(cppAst);
-                childrenToParents.putAll(phase2.childrenToParents);
-            }
-
-            Phase4 phase4 = new Phase4(runtime, childrenToParents, inits);
-            ArrayList<GNode> asts = new ArrayList<GNode>();
-
-            for (Node javaAst : javaAsts) {
-                SymbolTable table = tables.poll();
-                asts.add((GNode) phase4.runNode((GNode) javaAst, table));
-            }
-
-            for (GNode node : asts) {
+            for (GNode node : session.getLoweredAsts()) {
                 runtime.console().format(node).pln().flush();
             }
         }
 
         if (runtime.test("printPhase5")) {
-
-            List<GNode> javaAsts = Phase1.parse(n);
-            HashMap<String, ArrayList<Phase1.Initializer>> inits = new HashMap<String, ArrayList<Phase1.Initializer>>();
-            LinkedList<SymbolTable> tables = new LinkedList<SymbolTable>();
-
-            for (GNode unmangledAst : javaAsts) {
-                SymbolTable table = new SymbolTableBuilder(runtime).getTable(unmangledAst);
-                inits.putAll(Phase1.mangle(runtime, table, unmangledAst));
-                tables.add(table);
-            }
-
-            ArrayList<Node> cppAsts = new ArrayList<Node>();
-            HashMap<String, String> childrenToParents = new HashMap<String, String>();
-
-            for (Node javaAst : javaAsts) {
-                Phase2 phase2 = new Phase2();
-                Node cppAst = phase2.runPhase2(javaAst);
-                cppAsts.add(cppAst);
-                childrenToParents.putAll(phase2.childrenToParents);
-            }
-
-            Phase4 phase4 = new Phase4(runtime, childrenToParents, inits);
-            ArrayList<GNode> asts = new ArrayList<GNode>();
-
-            for (Node javaAst : javaAsts) {
-                SymbolTable table = tables.poll();
-                asts.add((GNode) phase4.runNode((GNode) javaAst, table));
-            }
-
-            Phase5 printer = new Phase5("output.cpp");
-            for (GNode node : asts) {
+            Phase5 printer = new Phase5(outputLocation(), "output.cpp");
+            for (GNode node : session.getLoweredAsts()) {
                 printer.headOfFile();
                 printer.print(node);
             }
+            printer.close();
         }
 
         if (runtime.test("printMangling")) {
@@ -283,55 +224,19 @@ public class Boot extends Tool {
         }
 
         if (runtime.test("translate")) {
-            // phase 1
-            // process all dependencies, name mangling for method overloading
-
-            List<GNode> javaAsts = Phase1.parse(n);
-            HashMap<String, ArrayList<Phase1.Initializer>> inits = new HashMap<String, ArrayList<Phase1.Initializer>>();
-            LinkedList<SymbolTable> tables = new LinkedList<SymbolTable>();
-
-            for (GNode unmangledAst : javaAsts) {
-                SymbolTable table = new SymbolTableBuilder(runtime).getTable(unmangledAst);
-                inits.putAll(Phase1.mangle(runtime, table, unmangledAst));
-                tables.add(table);
-            }
-
-            // phase 2
-            // below is for single javaAst, we can parse multiple ones too just need to change logic for Phase 3 printer
-            // Node cppAst = Phase2.runPhase2(javaAsts.get(0));
-
-            ArrayList<Node> cppAsts = new ArrayList<Node>();
-            HashMap<String, String> childrenToParents = new HashMap<String, String>();
-
-            for (Node javaAst : javaAsts) {
-                Phase2 phase2 = new Phase2();
-                Node cppAst = phase2.runPhase2(javaAst);
-                cppAsts.add(cppAst);
-                childrenToParents.putAll(phase2.childrenToParents);
-            }
-
-            Phase3 phase3 = new Phase3();
-            // below is again for single ast
-            // phase3.print((GNode) cppAst);
-            // phase 3
-            for (Node cppAst : cppAsts) {
-                phase3.print((GNode) cppAst);
-            }
-
-            Phase4 phase4 = new Phase4(runtime, childrenToParents, inits);
-            ArrayList<GNode> asts = new ArrayList<GNode>();
-
-            for (Node javaAst : javaAsts) {
-                SymbolTable table = tables.poll();
-                asts.add((GNode) phase4.runNode((GNode) javaAst, table));
-            }
+            if (runtime.test("sharded")) session.setSharded(true);
+            Set<String> changed = session.translate(outputLocation());
+            logger.info(changed.size() + " classes changed since the last translation: " + changed);
+        }
+    }
 
-            Phase5 printer = new Phase5("output.cpp");
-            for (GNode node : asts) {
-                printer.headOfFile();
-                printer.print( node);
-            }
+    // output directory given by -output, or output.location
+    private String outputLocation() {
+        if (!runtime.hasValue("outputLocation") || null == runtime.getString("outputLocation")) {
+            return XtcProps.get("output.location");
         }
+        String location = runtime.getString("outputLocation");
+        return location.endsWith("/") ? location : location + "/";
     }
 
     /**
@@ -340,6 +245,12 @@ public class Boot extends Tool {
      * @param args The command line arguments.
      */
     public static void main(String[] args) {
-        new Boot().run(args);
+        if (args.length == 1 && args[0].equals("-server")) {
+            new TranslationServer(System.in, System.out).serve();
+        } else if (args.length == 2 && args[0].equals("-batch")) {
+            System.exit(new BatchTranslator().run(new File(args[1])) ? 0 : 1);
+        } else {
+            new Boot().run(args);
+        }
     }
 }
@@ -0,0 +1,136 @@
+/**
+ * BuiltInClasses class that loads the ObjectReps of the classes the C++ runtime implements
+ * natively, Object, String and Class, from the descriptor java.lang.builtins on the classpath
+ * the descriptor is read once per JVM, the ObjectReps are shared by every translation and
+ * every thread, Phase 2 only reads them and builds the ObjectReps of the translated classes
+ * next to them
+ * only the list is unmodifiable, the ObjectReps, their vtables and members are plain mutable
+ * objects, sharing them across threads is safe only as long as every caller keeps to reading them
+ * a native class added to the runtime only needs to be listed in the descriptor
+ *
+ * @version 1.0
+ */
+
+package edu.nyu.oop;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BuiltInClasses {
+
+    public static final String DESCRIPTOR = "java.lang.builtins";
+
+    // loaded when the class is first used, the JVM makes sure that happens once
+    private static class Holder {
+        static final List<ObjectRep> BUILT_INS = Collections.unmodifiableList(load(DESCRIPTOR));
+    }
+
+    /**
+     * @return ObjectReps of the built in classes, every class after its parent, Object first
+     */
+    public static List<ObjectRep> get() {
+        return Holder.BUILT_INS;
+    }
+
+    /**
+     * Reads a descriptor of built in classes from the classpath
+     *
+     * @param resource name of the descriptor
+     * @return ObjectReps of the described classes, in the order of the descriptor
+     */
+    public static List<ObjectRep> load(String resource) {
+        InputStream in = BuiltInClasses.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) throw new RuntimeException("Unable to find " + resource + " on the classpath.");
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            List<ObjectRep> reps = new ArrayList<ObjectRep>();
+            Map<String, ObjectRep> byName = new HashMap<String, ObjectRep>();
+            ObjectRep current = null;
+            boolean constructorsDeclared = false;
+
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] words = line.split("\\s+", 4);
+                String kind = words[0];
+
+                if (kind.equals("class")) {
+                    current = new ObjectRep(word(words, 1, resource, number));
+                    if (words.length > 2) {
+                        if (!words[2].equals("extends") || words.length < 4 || !byName.containsKey(words[3])) {
+                            throw malformed(resource, number, "unknown parent");
+                        }
+                        current.parent = byName.get(words[3]);
+                    } else if (!reps.isEmpty()) {
+                        throw malformed(resource, number, "only the first class has no parent");
+                    }
+                    reps.add(current);
+                    byName.put(current.name, current);
+                    constructorsDeclared = false;
+                    continue;
+                }
+                if (current == null) throw malformed(resource, number, "member outside of a class");
+
+                if (kind.equals("field")) {
+                    current.classRep.fields.add(new Field("public", false, word(words, 1, resource, number), word(words, 2, resource, number), ""));
+                } else if (kind.equals("constructor")) {
+                    // the first declared constructor replaces the default one, init stays
+                    if (!constructorsDeclared) current.classRep.constructors.remove(0);
+                    constructorsDeclared = true;
+                    String[] rest = line.split("\\s+", 3);
+                    current.classRep.constructors.add(new Constructor("public", word(rest, 1, resource, number),
+                                                      parameters(rest.length > 2 ? rest[2] : "", resource, number)));
+                } else if (kind.equals("method")) {
+                    current.classRep.methods.add(new Method("public", true, word(words, 1, resource, number), word(words, 2, resource, number),
+                                                 parameters(words.length > 3 ? words[3] : "", resource, number)));
+                } else if (kind.equals("slot")) {
+                    current.vtable.fields.add(new Field("public", false, word(words, 1, resource, number), word(words, 2, resource, number),
+                                              words.length > 3 ? words[3] : ""));
+                } else if (kind.equals("vmethod")) {
+                    String[] rest = line.split("\\s+", 3);
+                    current.vtable.methods.add(new VMethod("public", false, word(rest, 1, resource, number), word(rest, 2, resource, number)));
+                } else {
+                    throw malformed(resource, number, "unknown declaration " + kind);
+                }
+            }
+            if (reps.isEmpty()) throw new RuntimeException(resource + " declares no classes.");
+            return reps;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read " + resource + ".", e);
+        }
+    }
+
+    // parameters written as "type name, type name"
+    private static ArrayList<Parameter> parameters(String list, String resource, int number) {
+        ArrayList<Parameter> parameters = new ArrayList<Parameter>();
+        if (list.trim().isEmpty()) return parameters;
+
+        for (String parameter : list.split(",")) {
+            String[] words = parameter.trim().split("\\s+");
+            if (words.length != 2) throw malformed(resource, number, "parameter " + parameter.trim());
+            parameters.add(new Parameter(words[0], words[1]));
+        }
+        return parameters;
+    }
+
+    private static String word(String[] words, int i, String resource, int number) {
+        if (words.length <= i) throw malformed(resource, number, "missing name or type");
+        return words[i];
+    }
+
+    private static RuntimeException malformed(String resource, int number, String reason) {
+        return new RuntimeException("Malformed line " + number + " of " + resource + ", " + reason);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * ClassHierarchy class that puts the ObjectReps of one compilation unit
+ * in inheritance order, i.e. every class comes after
+ * its parent, a class whose parent has not been placed yet waits for it
+ * and is placed right after it, so each class is looked at once
+ * classes already in inheritance order keep the order they were declared in
+ * the parents of the classes are set to the placed ObjectReps of their
+ * parents, classes without a parent get Object, the first root
+ *
+ * @version 1.0
+ */
+package edu.nyu.oop;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ClassHierarchy {
+
+    private final Map<String, ObjectRep> byName = new HashMap<String, ObjectRep>();
+    private final Phase2.ObjectRepList order = new Phase2.ObjectRepList();
+
+    // classes waiting for their parent, by name of the parent
+    private final Map<String, List<ObjectRep>> waiting = new HashMap<String, List<ObjectRep>>();
+
+    /**
+     * Builds the hierarchy
+     *
+     * @param roots ObjectReps that are already resolved (Object, String and Class), Object first
+     * @param classes ObjectReps whose parents only carry the name of the parent, or null for Object
+     */
+    public ClassHierarchy(List<ObjectRep> roots, List<ObjectRep> classes) {
+        for (ObjectRep root : roots) place(root);
+
+        ObjectRep object = roots.get(0);
+        for (ObjectRep rep : classes) {
+            if (rep.parent == null) rep.parent = object;
+
+            if (byName.containsKey(rep.parent.name)) {
+                place(rep);
+            } else {
+                List<ObjectRep> children = waiting.get(rep.parent.name);
+                if (children == null) {
+                    children = new ArrayList<ObjectRep>();
+                    waiting.put(rep.parent.name, children);
+                }
+                children.add(rep);
+            }
+        }
+
+        if (!waiting.isEmpty()) {
+            String parent = waiting.keySet().iterator().next();
+            throw new RuntimeException("Unknown superclass " + parent + " of class " + waiting.get(parent).get(0).name);
+        }
+    }
+
+    // adds rep after its parent, then every class that was waiting for it
+    private void place(ObjectRep rep) {
+        // the built in roots already point to their placed parents and are shared, they are never written
+        ObjectRep parent = rep.parent == null ? null : byName.get(rep.parent.name);
+        if (parent != null && parent != rep.parent) rep.parent = parent;
+        byName.put(rep.name, rep);
+        order.add(rep);
+
+        List<ObjectRep> children = waiting.remove(rep.name);
+        if (children != null) {
+            for (ObjectRep child : children) place(child);
+        }
+    }
+
+    /**
+     * @return roots followed by the classes, every class after its parent
+     */
+    public Phase2.ObjectRepList getOrder() {
+        return order;
+    }
+}
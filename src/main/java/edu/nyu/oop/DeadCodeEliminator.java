@@ -0,0 +1,255 @@
+/**
+ * Removes classes and methods that cannot be reached from main from the mangled Java ASTs,
+ * so Phase 2 builds no layouts and vtables for them and Phase 3 and Phase 5 print no code for them
+ * reachability starts at the main methods of the primary source and follows the call graph
+ * Phase 1 annotated, a call reaches every method with its mangledName in a live class, calls
+ * without a mangledName reach every method of their name
+ * a class is live once reachable code names it, in a type, a new expression or as the receiver
+ * of a static call, its ancestors are live with it, everything of a live class that is not a
+ * method, its fields and initializers, and its constructors are reachable
+ * the methods of Object (toString, hashCode, equals, getClass) are kept in every live class since
+ * the runtime and string conversion call them without a call expression
+ * every live class emits a concrete vtable that points to all of its virtual methods, so a
+ * virtual method called anywhere is kept in every live class declaring it
+ *
+ * @version 1.0
+ */
+
+package edu.nyu.oop;
+
+import xtc.tree.GNode;
+import xtc.tree.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+public class DeadCodeEliminator {
+
+    private static final Set<String> OBJECT_METHODS = new HashSet<String>();
+    static {
+        OBJECT_METHODS.add("toString");
+        OBJECT_METHODS.add("hashCode");
+        OBJECT_METHODS.add("equals");
+        OBJECT_METHODS.add("getClass");
+    }
+
+    // class declarations of all ASTs by name
+    private final Map<String, List<GNode>> classes = new HashMap<String, List<GNode>>();
+
+    private final Set<String> liveClasses = new HashSet<String>();
+    private final Set<GNode> liveMethods = Collections.newSetFromMap(new IdentityHashMap<GNode, Boolean>());
+    private final Set<String> calledMangledNames = new HashSet<String>();
+    private final Set<String> calledNames = new HashSet<String>();
+
+    // code found reachable but not scanned yet
+    private final Queue<Node> pending = new ArrayDeque<Node>();
+
+    private int removedClasses;
+    private int removedMethods;
+
+    /**
+     * Removes everything main cannot reach from the ASTs, in place
+     * nothing is removed if the primary source has no main method
+     *
+     * @param asts mangled Java ASTs, primary source first
+     * @return the eliminator, for its counts
+     */
+    public static DeadCodeEliminator run(List<GNode> asts) {
+        DeadCodeEliminator eliminator = new DeadCodeEliminator();
+        if (!asts.isEmpty()) eliminator.eliminate(asts);
+        return eliminator;
+    }
+
+    private void eliminate(List<GNode> asts) {
+        for (GNode ast : asts) {
+            for (GNode classNode : classDeclarations(ast)) {
+                List<GNode> declarations = classes.get(classNode.getString(1));
+                if (declarations == null) {
+                    declarations = new ArrayList<GNode>();
+                    classes.put(classNode.getString(1), declarations);
+                }
+                declarations.add(classNode);
+            }
+        }
+
+        // roots, the main methods of the primary source
+        boolean hasMain = false;
+        for (GNode classNode : classDeclarations(asts.get(0))) {
+            for (GNode method : methods(classNode)) {
+                if (method.getString(3).equals("main")) {
+                    markClass(classNode.getString(1));
+                    markMethod(method);
+                    hasMain = true;
+                }
+            }
+        }
+        if (!hasMain) return;
+
+        // scan reachable code until no new classes or methods turn up
+        boolean changed = true;
+        while (changed) {
+            while (!pending.isEmpty()) scan(pending.poll());
+
+            changed = false;
+            for (String name : liveClasses) {
+                for (GNode classNode : classes.get(name)) {
+                    for (GNode method : methods(classNode)) {
+                        if (!liveMethods.contains(method) && (isConstructor(classNode, method) || isCalled(method))) {
+                            markMethod(method);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < asts.size(); i++) asts.set(i, remove(asts.get(i)));
+    }
+
+    // constructors are method declarations named like their class, and live with it
+    private static boolean isConstructor(GNode classNode, GNode method) {
+        return method.getString(3).equals(classNode.getString(1));
+    }
+
+    // whether the calls found so far reach a method of a live class
+    private boolean isCalled(GNode method) {
+        String name = method.getString(3);
+        Object mangledName = method.getProperty("mangledName");
+        return OBJECT_METHODS.contains(name) || calledNames.contains(name)
+               || (mangledName != null && calledMangledNames.contains(mangledName));
+    }
+
+    private void markClass(String name) {
+        if (!classes.containsKey(name) || !liveClasses.add(name)) return;
+
+        // everything but the methods is reachable with the class, its extension names its parent
+        for (GNode classNode : classes.get(name)) {
+            for (Object o : classNode) {
+                if (!(o instanceof Node)) continue;
+                Node child = (Node) o;
+                if (child.hasName("ClassBody")) {
+                    for (Object member : child) {
+                        if (member instanceof Node && !((Node) member).hasName("MethodDeclaration")) pending.add((Node) member);
+                    }
+                } else {
+                    pending.add(child);
+                }
+            }
+        }
+    }
+
+    private void markMethod(GNode method) {
+        if (liveMethods.add(method)) pending.add(method);
+    }
+
+    private void scan(Node node) {
+        if (node.hasName("CallExpression")) {
+            Object mangledName = node.getProperty("mangledName");
+            if (mangledName != null) calledMangledNames.add((String) mangledName);
+            else if (node.get(2) instanceof String) calledNames.add(node.getString(2));
+        } else if (node.hasName("QualifiedIdentifier")) {
+            for (Object o : node) if (o instanceof String) markClass((String) o);
+        } else if (node.hasName("PrimaryIdentifier")) {
+            markClass(node.getString(0));
+        }
+
+        for (Object o : node) if (o instanceof Node) scan((Node) o);
+    }
+
+    // the AST without its dead classes and methods, a new root if the root had to be copied
+    private GNode remove(GNode ast) {
+        boolean[] deadClasses = new boolean[ast.size()];
+        for (int i = 0; i < ast.size(); i++) {
+            Object o = ast.get(i);
+            if (!(o instanceof GNode) || !((GNode) o).hasName("ClassDeclaration")) continue;
+
+            GNode classNode = (GNode) o;
+            if (!liveClasses.contains(classNode.getString(1))) {
+                deadClasses[i] = true;
+                removedClasses++;
+                continue;
+            }
+
+            for (int j = 0; j < classNode.size(); j++) {
+                Object child = classNode.get(j);
+                if (!(child instanceof GNode) || !((GNode) child).hasName("ClassBody")) continue;
+
+                GNode body = (GNode) child;
+                boolean[] deadMethods = new boolean[body.size()];
+                for (int k = 0; k < body.size(); k++) {
+                    Object member = body.get(k);
+                    if (member instanceof GNode && ((GNode) member).hasName("MethodDeclaration") && !liveMethods.contains(member)) {
+                        deadMethods[k] = true;
+                        removedMethods++;
+                    }
+                }
+                classNode.set(j, prune(body, deadMethods));
+            }
+        }
+        return prune(ast, deadClasses);
+    }
+
+    // node without the dropped children, nodes of a fixed size cannot lose children so they are copied
+    // together with their location and properties, which hold the scopes of the symbol table
+    private static GNode prune(GNode node, boolean[] drop) {
+        boolean any = false;
+        for (boolean d : drop) any |= d;
+        if (!any) return node;
+
+        if (node.hasVariable()) {
+            for (int i = node.size() - 1; i >= 0; i--) if (drop[i]) node.remove(i);
+            return node;
+        }
+
+        GNode copy = GNode.create(node.getName(), node.size());
+        for (int i = 0; i < node.size(); i++) if (!drop[i]) copy.add(node.get(i));
+        copy.setLocation(node);
+        for (String property : node.properties()) copy.setProperty(property, node.getProperty(property));
+        return copy;
+    }
+
+    private static List<GNode> classDeclarations(GNode ast) {
+        List<GNode> classNodes = new ArrayList<GNode>();
+        for (Object o : ast) {
+            if (o instanceof GNode && ((GNode) o).hasName("ClassDeclaration")) classNodes.add((GNode) o);
+        }
+        return classNodes;
+    }
+
+    private static List<GNode> methods(GNode classNode) {
+        List<GNode> methodNodes = new ArrayList<GNode>();
+        for (Object o : classBody(classNode)) {
+            if (o instanceof GNode && ((GNode) o).hasName("MethodDeclaration")) methodNodes.add((GNode) o);
+        }
+        return methodNodes;
+    }
+
+    private static GNode classBody(GNode classNode) {
+        for (Object o : classNode) {
+            if (o instanceof GNode && ((GNode) o).hasName("ClassBody")) return (GNode) o;
+        }
+        throw new IllegalArgumentException("Class " + classNode.getString(1) + " has no body");
+    }
+
+    /**
+     * @return number of class declarations removed
+     */
+    public int getRemovedClasses() {
+        return removedClasses;
+    }
+
+    /**
+     * @return number of method declarations removed
+     */
+    public int getRemovedMethods() {
+        return removedMethods;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Makefile for the sharded output of a translation, it compiles main.cpp, output.cpp, every
+ * class source file and the runtime in java_lang.cpp separately and links them into a.out
+ * so make -j compiles the classes on all cores, and since unchanged files are left alone by
+ * the output sinks, a change to one class only recompiles its source file
+ * g++ writes the header dependencies of every object next to it, make reads them on the
+ * next run, a layout change recompiles every class that includes output.h
+ * RUNTIME names the directory of java_lang.cpp, java_lang.h and ptr.h, the output directory
+ * by default
+ *
+ * @version 1.0
+ */
+
+package edu.nyu.oop;
+
+import edu.nyu.oop.util.OutputSink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class Makefile {
+
+    public static final String FILE_NAME = "Makefile";
+
+    /**
+     * Builds the Makefile
+     *
+     * @param shards class source files, in the order of the classes
+     * @return contents of the Makefile
+     */
+    public static String build(List<String> shards) {
+        StringBuilder sources = new StringBuilder("main.cpp output.cpp");
+        for (String shard : shards) sources.append(" \\\n          ").append(shard);
+
+        return "# Generated by the translator, build with make -j\n"
+               + "\n"
+               + "RUNTIME ?= .\n"
+               + "CXXFLAGS ?= -std=c++11\n"
+               + "CPPFLAGS += -I$(RUNTIME)\n"
+               + "\n"
+               + "SOURCES = " + sources + "\n"
+               + "OBJECTS = $(SOURCES:.cpp=.o) java_lang.o\n"
+               + "\n"
+               + "a.out: $(OBJECTS)\n"
+               + "\t$(CXX) $(CXXFLAGS) -o $@ $(OBJECTS)\n"
+               + "\n"
+               + "%.o: %.cpp\n"
+               + "\t$(CXX) $(CPPFLAGS) $(CXXFLAGS) -MMD -MP -c -o $@ $<\n"
+               + "\n"
+               + "java_lang.o: $(RUNTIME)/java_lang.cpp\n"
+               + "\t$(CXX) $(CPPFLAGS) $(CXXFLAGS) -MMD -MP -c -o $@ $<\n"
+               + "\n"
+               + "clean:\n"
+               + "\trm -f a.out $(OBJECTS) $(OBJECTS:.o=.d)\n"
+               + "\n"
+               + ".PHONY: clean\n"
+               + "\n"
+               + "-include $(OBJECTS:.o=.d)\n";
+    }
+
+    /**
+     * Writes the Makefile, it is left untouched when its contents did not change
+     *
+     * @param sink sink the Makefile is written to
+     * @param shards class source files, in the order of the classes
+     * @return true if the Makefile was rewritten
+     */
+    public static boolean write(OutputSink sink, List<String> shards) {
+        try {
+            return sink.write(FILE_NAME, build(shards).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write " + FILE_NAME + " to " + sink, e);
+        }
+    }
+}
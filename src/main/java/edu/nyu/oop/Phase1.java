@@ -19,7 +19,13 @@ package edu.nyu.oop;
 import edu.nyu.oop.util.JavaFiveImportParser;
 import edu.nyu.oop.util.SymbolTableUtil;
 import edu.nyu.oop.util.NodeUtil;
+import edu.nyu.oop.util.OrderedTasks;
+import edu.nyu.oop.util.Profiler;
+import edu.nyu.oop.util.ResolutionCache;
+import edu.nyu.oop.util.SourceIndex;
+import edu.nyu.oop.util.SymbolTableBuilder;
 import edu.nyu.oop.util.TypeUtil;
+import edu.nyu.oop.util.XtcProps;
 
 import xtc.Constants;
 import xtc.lang.Java;
@@ -31,15 +37,22 @@ import xtc.type.*;
 import xtc.tree.Attribute;
 import xtc.util.Runtime;
 import xtc.util.SymbolTable;
+import org.slf4j.Logger;
 
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 public class Phase1 {
+    private static Logger logger = org.slf4j.LoggerFactory.getLogger(Phase1.class);
 
     /* default constructor */
     public Phase1() {}
@@ -50,17 +63,33 @@ public class Phase1 {
      * @return     List of Java ASTs
      */
     public static List<GNode> parse(Node n) {
+        return parse(n, XtcProps.getInt("parse.threads", 1));
+    }
+
+    /** parse the Java files and their dependencies, newly discovered files are parsed on a pool of threads
+     *
+     * @param        n  Node of type Node
+     * @param  threads  number of parser threads, 1 parses serially, 0 uses one thread per processor
+     * @return          List of Java ASTs, in the same order for any number of threads
+     */
+    public static List<GNode> parse(Node n, int threads) {
 
         GNode node = (GNode) n;
-        Set<Path> paths = new HashSet<Path>();
         List<GNode> ast = new ArrayList<GNode>();
 
-        parse(node, paths, ast);
+        if (threads == 0) threads = java.lang.Runtime.getRuntime().availableProcessors();
+
+        // directories listed by earlier runs are checked for changes again
+        SourceIndex.getDefault().newRun();
+
+        if (threads == 1) parse(node, new HashSet<Path>(), ast);
+        else parse(node, new HashSet<Path>(), ast, threads);
 
         return ast;
     }
 
     /** parse the Java files and their dependencies recursively
+     * imports are resolved to files first and a file is only parsed the first time it is seen
      *
      * @param   node  Node of type Node
      * @param  paths  Set of paths
@@ -68,30 +97,110 @@ public class Phase1 {
      */
     private static void parse(GNode node, Set<Path> paths, List<GNode> ast) {
 
+        paths.add(absolutePath(node));
+        ast.add(node);
 
-        // use a queue of nodes to find dependencies and process them
-        Queue<GNode> nodes = new ArrayDeque<GNode>();
-        nodes.add(node);
+        // use a queue of files to find dependencies and process them
+        Queue<File> files = new ArrayDeque<File>(JavaFiveImportParser.resolve(node));
 
-        while(!nodes.isEmpty()) {
+        while(!files.isEmpty()) {
 
-            GNode next = nodes.poll();
+            File next = files.poll();
 
-            //test if seen to avoid cyclical dependencies
-            String loc = next.getLocation().file;
+            //test if seen to avoid cyclical dependencies, before parsing so no file is parsed twice
+            if (paths.add(absolutePath(next))) {
+                GNode parsed = (GNode) NodeUtil.parseJavaFile(next);
+                ast.add(parsed);
+                files.addAll(JavaFiveImportParser.resolve(parsed));
+            }
+        }
 
-            // obtain path and convert  to absolute path to ensure uniqueness
-            Path path = Paths.get(loc);
-            path = path.toAbsolutePath();
+    }
 
-            // if file hasn't been visited, process it
-            if(!paths.contains(path)) {
-                paths.add(path);
-                ast.add(next);
-                nodes.addAll(JavaFiveImportParser.parse(next));
+    /** parse the Java files and their dependencies level by level, parsing each level in parallel
+     * import resolution walks the AST with an xtc Visitor, so it stays on the calling thread
+     * and only the parser runs on the pool
+     * every path is submitted to the parser once, later references to it share its result
+     *
+     * @param    node  Node of type Node
+     * @param   paths  Set of paths
+     * @param     ast  List of ASTs
+     * @param threads  number of parser threads
+     */
+    private static void parse(GNode node, Set<Path> paths, List<GNode> ast, int threads) {
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        final Profiler profiler = Profiler.current();
+
+        // parse of every path seen so far
+        Map<Path, Future<GNode>> parsed = new HashMap<Path, Future<GNode>>();
+        parsed.put(absolutePath(node), CompletableFuture.completedFuture(node));
+
+        try {
+            // nodes of the current level, in the order the queue of the serial parse would see them
+            List<GNode> level = new ArrayList<GNode>();
+            level.add(node);
+
+            while (!level.isEmpty()) {
+
+                List<Future<GNode>> nextLevel = new ArrayList<Future<GNode>>();
+
+                for (GNode next : level) {
+
+                    // if file hasn't been visited, process it and parse its dependencies in the background
+                    if (paths.add(absolutePath(next))) {
+                        ast.add(next);
+                        for (final File f : JavaFiveImportParser.resolve(next)) {
+                            Future<GNode> future = parsed.get(absolutePath(f));
+                            if (future == null) {
+                                future = pool.submit(new Callable<GNode>() {
+                                    public GNode call() {
+                                        Profiler.setCurrent(profiler);
+                                        try {
+                                            return (GNode) NodeUtil.parseJavaFile(f);
+                                        } finally {
+                                            Profiler.setCurrent(null);
+                                        }
+                                    }
+                                });
+                                parsed.put(absolutePath(f), future);
+                            }
+                            // already visited files are dropped when the next level is processed
+                            nextLevel.add(future);
+                        }
+                    }
+                }
+
+                level = new ArrayList<GNode>();
+                for (Future<GNode> future : nextLevel) level.add(future.get());
             }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException("Unable to parse dependencies of " + node.getLocation().file, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing dependencies of " + node.getLocation().file, e);
+        } finally {
+            pool.shutdown();
         }
+    }
 
+    /** obtain path of the file a node was parsed from and convert to absolute path to ensure uniqueness
+     *
+     * @param  node  Node of type Node
+     * @return       absolute Path of its file
+     */
+    private static Path absolutePath(GNode node) {
+        return Paths.get(node.getLocation().file).toAbsolutePath().normalize();
+    }
+
+    /** obtain absolute path of a file, comparable with the paths of nodes
+     *
+     * @param  file  File
+     * @return       absolute Path of the file
+     */
+    private static Path absolutePath(File file) {
+        return file.toPath().toAbsolutePath().normalize();
     }
 
     /** Make this access explicit, mangle method names, and record SymbolTable info as Node properties for a given AST
@@ -101,12 +210,118 @@ public class Phase1 {
      * @param       n   root of AST
      */
     public static HashMap<String, ArrayList<Initializer>> mangle(Runtime runtime, SymbolTable table, Node n) {
-        Mangler mangler = new Mangler(runtime, table);
+        List<SymbolTable> tables = new ArrayList<SymbolTable>();
+        tables.add(table);
+        List<Node> asts = new ArrayList<Node>();
+        asts.add(n);
+        return mangle(runtime, tables, asts);
+    }
+
+    /** Build the symbol table of every AST, on frontend.threads threads
+     *
+     * @param runtime   xtc runtime
+     * @param    asts   roots of the ASTs
+     * @return          SymbolTable of every AST, in the same order as the ASTs
+     */
+    public static List<SymbolTable> buildTables(Runtime runtime, List<GNode> asts) {
+        return buildTables(runtime, asts, XtcProps.getInt("frontend.threads", 1));
+    }
+
+    /** Build the symbol table of every AST, the tables of different ASTs are independent and built in parallel
+     *
+     * @param runtime   xtc runtime
+     * @param    asts   roots of the ASTs
+     * @param threads   number of threads, 1 builds serially, 0 uses one thread per processor
+     * @return          SymbolTable of every AST, in the same order as the ASTs
+     */
+    public static List<SymbolTable> buildTables(final Runtime runtime, List<GNode> asts, int threads) {
+        List<Callable<SymbolTable>> tasks = new ArrayList<Callable<SymbolTable>>();
+        for (final GNode ast : asts) {
+            tasks.add(new Callable<SymbolTable>() {
+                public SymbolTable call() {
+                    Profiler.Sample sample = Profiler.start("SymbolTableBuilder", fileOf(ast));
+                    SymbolTable table = new SymbolTableBuilder(runtime).getTable(ast);
+                    sample.stop();
+                    return table;
+                }
+            });
+        }
+        return OrderedTasks.run(tasks, threads);
+    }
+
+    /** Mangle a set of ASTs together on frontend.threads threads, see mangle(Runtime, List, List, int)
+     *
+     * @param runtime   xtc runtime
+     * @param  tables   SymbolTable of every AST
+     * @param    asts   roots of the ASTs, in the same order as the tables
+     * @return          initializers of the fields of all classes
+     */
+    public static HashMap<String, ArrayList<Initializer>> mangle(Runtime runtime, List<SymbolTable> tables, List<? extends Node> asts) {
+        return mangle(runtime, tables, asts, XtcProps.getInt("frontend.threads", 1));
+    }
+
+    /** Mangle a set of ASTs together, so calls across files find the mangled names of their targets
+     * the mangled names of all method declarations are collected first, in a pass that skips method bodies,
+     * then a single pass over each AST resolves the calls and makes this access explicit
+     * both passes work on each AST and its table alone and run in parallel, only the merges of the
+     * mangled names and of the initializers of all ASTs are serial, in the order of the ASTs,
+     * so the result is the same for any number of threads
+     *
+     * @param runtime   xtc runtime
+     * @param  tables   SymbolTable of every AST
+     * @param    asts   roots of the ASTs, in the same order as the tables
+     * @param threads   number of threads, 1 mangles serially, 0 uses one thread per processor
+     * @return          initializers of the fields of all classes
+     */
+    public static HashMap<String, ArrayList<Initializer>> mangle(final Runtime runtime, final List<SymbolTable> tables,
+                                                                  final List<? extends Node> asts, int threads) {
+        List<Callable<HashMap<String, String>>> declarations = new ArrayList<Callable<HashMap<String, String>>>();
+        for (int i = 0; i < asts.size(); i++) {
+            final int ast = i;
+            declarations.add(new Callable<HashMap<String, String>>() {
+                public HashMap<String, String> call() {
+                    Profiler.Sample sample = Profiler.start("Phase1.declarations", fileOf(asts.get(ast)));
+                    HashMap<String, String> names = new HashMap<String, String>();
+                    new DeclarationMangler(runtime, tables.get(ast), names).dispatch(asts.get(ast));
+                    sample.stop();
+                    return names;
+                }
+            });
+        }
+
+        // read only from here on, by the manglers of all ASTs
+        final HashMap<String, String> methodScopeToMangledName = new HashMap<String, String>();
+        for (HashMap<String, String> names : OrderedTasks.run(declarations, threads)) methodScopeToMangledName.putAll(names);
+
+        List<Callable<Mangler>> calls = new ArrayList<Callable<Mangler>>();
+        for (int i = 0; i < asts.size(); i++) {
+            final int ast = i;
+            calls.add(new Callable<Mangler>() {
+                public Mangler call() {
+                    Profiler.Sample sample = Profiler.start("Phase1.mangle", fileOf(asts.get(ast)));
+                    Mangler mangler = new Mangler(runtime, tables.get(ast), methodScopeToMangledName);
+                    mangler.dispatch(asts.get(ast));
+                    sample.stop();
+                    return mangler;
+                }
+            });
+        }
+
+        HashMap<String, ArrayList<Initializer>> initializers = new LinkedHashMap<String, ArrayList<Initializer>>();
+        List<Mangler> manglers = OrderedTasks.run(calls, threads);
+        for (int i = 0; i < manglers.size(); i++) {
+            initializers.putAll(manglers.get(i).getInitializers());
 
-        mangler.dispatch(n);
-        mangler.dispatch(n);
+            ResolutionCache resolutions = manglers.get(i).getResolutions();
+            logger.debug("Resolved calls and types of AST " + i + ": " + resolutions.getHits() + " hits, "
+                         + resolutions.getMisses() + " misses, " + resolutions.getInvalidations() + " invalidations");
+        }
+        return initializers;
+    }
 
-        return mangler.getInitializers();
+    // file an AST was parsed from, for profiling
+    private static String fileOf(Node ast) {
+        return ast.getLocation() == null ? "" : ast.getLocation().file;
     }
 
     /*
@@ -123,16 +338,30 @@ public class Phase1 {
         protected String parentName = "";
         protected HashMap<String, String> methodScopeToMangledName;
         protected HashMap<String, ArrayList<Initializer>> initializers;
+        protected ResolutionCache resolutions;
 
         public Mangler(Runtime runtime, SymbolTable table) {
+            this(runtime, table, new HashMap<String, String>());
+        }
+
+        /**
+         * @param methodScopeToMangledName mangled names of methods by the qualified name of their scope,
+         *                                 shared by the manglers of all ASTs of a translation
+         */
+        public Mangler(Runtime runtime, SymbolTable table, HashMap<String, String> methodScopeToMangledName) {
             this.runtime = runtime;
             this.table = table;
-            this.methodScopeToMangledName = new HashMap<String, String>();
-            this.initializers = new HashMap<String, ArrayList<Initializer>>();
+            this.methodScopeToMangledName = methodScopeToMangledName;
+            this.initializers = new LinkedHashMap<String, ArrayList<Initializer>>();
+            this.resolutions = new ResolutionCache(runtime, table);
         }
         
         public final List<File> classpath() {
-            return JavaEntities.classpath(runtime);
+            return resolutions.classpath();
+        }
+
+        public ResolutionCache getResolutions() {
+            return resolutions;
         }
 
         public HashMap<String, ArrayList<Initializer>> getInitializers () {
@@ -151,8 +380,7 @@ public class Phase1 {
             String callExpMethodName = (String) n.getString(2);
             Type callExpObjectType = callExpObjectLookup.getType();
             List<Type> callExpActuals = JavaEntities.typeList((List) dispatch(n.getNode(3)));
-            MethodT callExpMethod =
-                    JavaEntities.typeDotMethod(table, classpath(), callExpObjectType, true, callExpMethodName, callExpActuals);
+            MethodT callExpMethod = resolutions.typeDotMethod(callExpObjectType, callExpMethodName, callExpActuals);
             return callExpMethod.getResult();
         }
 
@@ -232,6 +460,14 @@ public class Phase1 {
             table.mark(n);
 
 
+            mangleDeclaration(n);
+
+            visit(n);
+            SymbolTableUtil.exitScope(table, n);
+        }
+
+        // sets the mangledName of a method declaration, the scope of the method must be the current scope
+        protected void mangleDeclaration(GNode n) {
             String methodName = n.getString(3);
             //If the method isn't main, overriding one of Object's methods, or a constructor, mangle its name
             if(!methodName.equals("main") && !methodName.equals("toString") &&
@@ -246,9 +482,6 @@ public class Phase1 {
                 n.setProperty("mangledName", mangledName);
                 methodScopeToMangledName.put(table.current().getQualifiedName(), mangledName);
             }
-
-            visit(n);
-            SymbolTableUtil.exitScope(table, n);
         }
 
         public void visitBlockDeclaration(GNode n) {
@@ -300,7 +533,7 @@ public class Phase1 {
                         (!"this".equals(methodName))) {
                     typeDot = JavaEntities.currentType(table);
                     parameters = JavaEntities.typeList((List) dispatch(n.getNode(3)));
-                    method = JavaEntities.typeDotMethod(table, classpath(), typeDot, true, methodName, parameters);
+                    method = resolutions.typeDotMethod(typeDot, methodName, parameters);
                     if (method == null) return;
                     if (!TypeUtil.isStaticType(method)) n.set(0, makeThisExpression());
                 }
@@ -315,7 +548,7 @@ public class Phase1 {
                         String identifierName = receiver.get(0).toString();
                         String currentScope = table.current().getQualifiedName();
                         //Check if identifier is a type (Static methods)
-                        Type potentialStaticType = JavaEntities.simpleNameToType(table, classpath(), currentScope, identifierName);
+                        Type potentialStaticType = resolutions.simpleNameToType(currentScope, identifierName);
                         if (potentialStaticType != null) typeDot = potentialStaticType;
                         //Otherwise, identifier is a variable (must find type)
                         else typeDot = ((VariableT) table.lookup(identifierName)).getType();
@@ -328,7 +561,7 @@ public class Phase1 {
                     }
                     //CastExpression (casted calls, i.e. "((B)a).m()")
                     else if (receiver.getName().equals("CastExpression"))
-                        typeDot = JavaEntities.simpleNameToType(table, classpath(), table.current().getQualifiedName(), receiver.getNode(0).getNode(0).get(0).toString());
+                        typeDot = resolutions.simpleNameToType(table.current().getQualifiedName(), receiver.getNode(0).getNode(0).get(0).toString());
                         //ThisExpression (this calls, i.e. "this.m()")
                     else if (receiver.getName().equals("ThisExpression"))
                         typeDot = JavaEntities.currentType(table);
@@ -344,18 +577,12 @@ public class Phase1 {
                         newParameters.add(JavaEntities.resolveIfAlias(table, classpath(), table.current().getQualifiedName(), parameter));
                     }
 
-                    //MANUAL METHOD LOOKUP
-                    List<MethodT> classMethods = JavaEntities.methodsOwnAndInherited(table, classpath(), typeDot);
-                    for(MethodT classMethod : classMethods) {
-                        if (classMethod.getName().equals(methodName)) {
-                            if(classMethod.getParameters().equals(parameters)){
-                                method = classMethod;
-                            }
+                    //Calls with the same receiver type, name and argument types resolve to the same method, see ResolutionCache
+                    method = resolutions.method("exactOrApplicable", typeDot, methodName, parameters, new ResolutionCache.MethodResolver() {
+                        public MethodT resolve(Type typeDot, String methodName, List<Type> parameters) {
+                            return exactOrApplicableMethod(typeDot, methodName, parameters);
                         }
-                    }
-
-                    //IF NO PERFECT MATCH FOUND, TRY TYPEDOTMETHOD
-                    if(method == null) method = JavaEntities.typeDotMethod(table, classpath(), typeDot, true, methodName, parameters);
+                    });
 
                     if(method != null) {
 
@@ -372,6 +599,24 @@ public class Phase1 {
             }
         }
 
+        // the method whose parameters are exactly the argument types, or else the most specific applicable one
+        private MethodT exactOrApplicableMethod(Type typeDot, String methodName, List<Type> parameters) {
+            MethodT method = null;
+            //MANUAL METHOD LOOKUP
+            List<MethodT> classMethods = JavaEntities.methodsOwnAndInherited(table, classpath(), typeDot);
+            for(MethodT classMethod : classMethods) {
+                if (classMethod.getName().equals(methodName)) {
+                    if(classMethod.getParameters().equals(parameters)){
+                        method = classMethod;
+                    }
+                }
+            }
+
+            //IF NO PERFECT MATCH FOUND, TRY TYPEDOTMETHOD
+            if(method == null) method = JavaEntities.typeDotMethod(table, classpath(), typeDot, true, methodName, parameters);
+            return method;
+        }
+
         public Node visitPrimaryIdentifier(GNode n) {
             String fieldName = n.getString(0);
 
@@ -443,6 +688,30 @@ public class Phase1 {
         }
     }
 
+    /*
+    Declaration pass of mangling, only enters the scopes of classes and methods to mangle the names
+    of method declarations, bodies, fields and initializer blocks are left to the Mangler
+     */
+    public static class DeclarationMangler extends Mangler {
+
+        public DeclarationMangler(Runtime runtime, SymbolTable table, HashMap<String, String> methodScopeToMangledName) {
+            super(runtime, table, methodScopeToMangledName);
+        }
+
+        public void visitMethodDeclaration(GNode n) {
+            SymbolTableUtil.enterScope(table, n);
+            table.mark(n);
+            mangleDeclaration(n);
+            SymbolTableUtil.exitScope(table, n);
+        }
+
+        public void visitFieldDeclaration(GNode n) {
+        }
+
+        public void visitBlockDeclaration(GNode n) {
+        }
+    }
+
     public static class Initializer {
         String name = "";
         boolean isStatic = false;
@@ -23,23 +23,49 @@ import xtc.tree.Visitor;
 import edu.nyu.oop.util.NodeUtil;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 public class Phase2 {
 
-    // HashMap of children to their parents
-    public static HashMap<String, String> childrenToParents = new HashMap<String, String>();
+    /**
+     * Result of Phase 2 for one Java AST, the C++ AST for the Phase 3 printer and the
+     * inheritance of the classes in it, neither is shared with any other run of Phase 2
+     */
+    public static final class Result {
+        private final Node cppAst;
+        private final Map<String, String> childrenToParents;
+
+        Result(Node cppAst, Map<String, String> childrenToParents) {
+            this.cppAst = cppAst;
+            this.childrenToParents = Collections.unmodifiableMap(new LinkedHashMap<String, String>(childrenToParents));
+        }
+
+        public Node getCppAst() {
+            return cppAst;
+        }
+
+        /**
+         * @return unmodifiable map of children to their parents, "" for classes directly under Object
+         */
+        public Map<String, String> getChildrenToParents() {
+            return childrenToParents;
+        }
+    }
 
     /**
      * main method, calls visitor, populates ObjectRepList, build CPP AST
      *
      * @param     n root node of given AST parsed by Phase 1
      *
-     * @return root node of AST with built layout and structure for each child and itself
+     * @return root node of AST with built layout and structure for each child and itself, together with the inheritance map
      */
-    public static Node runPhase2(Node n) {
+    public static Result runPhase2(Node n) {
 
         // this was for printing contents of data structures before node processing, now that portion of the code has been commented out
         boolean dump = false;
@@ -50,10 +76,11 @@ public class Phase2 {
 
         //Build list of class representations (java.lang, inheritance)
         ObjectRepList unfilled = visitor.getObjectRepresentations();
-        ObjectRepList filled = getFilledObjectRepList(unfilled);
+        HashMap<String, String> inheritance = new LinkedHashMap<String, String>();
+        ObjectRepList filled = getFilledObjectRepList(unfilled, inheritance);
 
         //Build C++ AST from class representations
-        return buildCppAst(visitor.getPackageName(), filled);
+        return new Result(buildCppAst(visitor.getPackageName(), filled), inheritance);
     }
 
     /**
@@ -323,46 +350,17 @@ public class Phase2 {
         public ObjectRep getCurrent() {
             return this.get(this.size() - 1);
         }
-
-        /**
-         * Iterativery searches for an ObjectRep from a given name
-         *
-         * @param       name name to be searched
-         *
-         * @return ObjectRep return if in list
-         * @return      null null if an ObjectRep from a given name isn't found
-         */
-        public ObjectRep getFromName(String name) {
-            for (ObjectRep rep : this) if (rep.name.equals(name)) return rep;
-            return null;
-        }
-
-        /**
-         * Gets index of ObjectRep by its name by searching for it
-         *
-         * @param   name name to be searched
-         *
-         * @return index index of ObjectRep if in List, -1 if not
-         */
-        public int getIndexFromName(String name) {
-            int index = 0;
-            for (ObjectRep rep : this)
-                if (rep.name.equals(name))
-                    return index;
-                else index++;
-            return -1;
-        }
     }
 
     /**
-     * initializes a ObjectRepList with hardcoded Object, String and Class data
+     * initializes a ObjectRepList with the built in Object, String and Class data
      * fills ObjectRepList using unfilled list with fill method that also sets
      * parents of Objects
      * resolves VTable structure for each object using inheritance relationship
      * proces inherited fields for data layout for each object using inheritance
      * relationship
      * removes object with main method as this does not need to be processed
-     * removes Object, String and Class at the last step as these are not needed
+     * removes the built in classes at the last step as these are not needed
      * anymore
      *
      * @param unfilled unprocessed ObjectRepList from visitor
@@ -370,98 +368,47 @@ public class Phase2 {
      * @return  filled ObjectRepList of resolved ctable and data layouts for each object
      */
     public static ObjectRepList getFilledObjectRepList(ObjectRepList unfilled) {
+        return getFilledObjectRepList(unfilled, new HashMap<String, String>());
+    }
+
+    /**
+     * Same as getFilledObjectRepList(ObjectRepList) but records the inheritance in the given map
+     *
+     * @param unfilled unprocessed ObjectRepList from visitor
+     * @param inheritance map of children to their parents, filled by this method
+     *
+     * @return  filled ObjectRepList of resolved ctable and data layouts for each object
+     */
+    public static ObjectRepList getFilledObjectRepList(ObjectRepList unfilled, Map<String, String> inheritance) {
 
         // manually add object, string, class
         ObjectRepList filled = initializeRepList();
 
         // fill with reps, in inheritance order
-        filled = fill(filled, unfilled);
-
-        // process reps
-        for (ObjectRep rep : filled) {
-
-            /* main goes here so ignore this, see below for new implementation
-            if (!rep.name.equals("Object") && !rep.name.equals("String") && !rep.name.equals("Class")) {
-                // check if main is in the rep
-                boolean main = false;
-                for (Method method : rep.classRep.methods) if (method.name.equals("main")) main = true;
-                // if main is not there, then process output and replace old with the new
-                if (!main) {
-                    ObjectRep newRep = processVTable(rep, rep.parent);
-                    int index = filled.getIndexFromName(newRep.name);
-                    filled.set(index, newRep);
-                }
-            }
-            */
+        filled = fill(filled, unfilled, inheritance);
 
-            // this is the new implementation
-            if (!rep.name.equals("Object") && !rep.name.equals("String") && !rep.name.equals("Class")) {
-                ObjectRep newRep = processVTable(rep, rep.parent);
-                int index = filled.getIndexFromName(newRep.name);
-                filled.set(index, newRep);
-            }
+        // the built in classes come first and are complete already
+        int builtIns = BuiltInClasses.get().size();
 
-            // don't forget to update the parents after replacing so that logic works, "bubbling down"
-            for (ObjectRep repSub : filled) {
-                if (repSub.parent != null) {
-                    int parentIndex = filled.getIndexFromName(repSub.parent.name);
-                    repSub.parent = filled.get(parentIndex);
-                }
-            }
+        // process reps, parents come before their children so a parent's vtable is always resolved first
+        // process, determine and the other helpers update the rep they are given in place, so the list and the parents stay consistent
+        for (int i = builtIns; i < filled.size(); i++) {
+            ObjectRep rep = filled.get(i);
+            processVTable(rep, rep.parent);
         }
 
         // after processing v-table process inherited fields (this is the last step, everything else should be consistent)
-        int counter = 0;
-        for (ObjectRep rep : filled) {
-            if (counter < 2) counter++;
-            else {
-                // as long as the parent isn't object there are fields that may be inherited (this depends on if static and so on)
-                if (!rep.parent.name.equals("Object")) {
-                    ObjectRep newRep = processFields(rep, rep.parent);
-                    int index = filled.getIndexFromName(rep.name);
-                    filled.set(index, newRep);
-                }
-            }
-            // again, don't forget to update the parents after replacing so that logic works, "bubbling down"
-            for (ObjectRep repSub : filled) {
-                if (repSub.parent != null) {
-                    int parentIndex = filled.getIndexFromName(repSub.parent.name);
-                    repSub.parent = filled.get(parentIndex);
-                }
-            }
+        for (int i = builtIns; i < filled.size(); i++) {
+            ObjectRep rep = filled.get(i);
+            // as long as the parent isn't object there are fields that may be inherited (this depends on if static and so on)
+            if (!rep.parent.name.equals("Object")) processFields(rep, rep.parent);
         }
 
-        /* don't remove main anymore, it's legal
-        // remove rep with main method
-        int mainIndex = -1;
-        for (ObjectRep rep : filled) {
-            for (Method method : rep.classRep.methods) {
-                if (method.name.equals("main"))
-                    mainIndex = filled.indexOf(rep);
-            }
-        }
-        if(mainIndex != -1) filled.remove(mainIndex);
-        */
-
-        // remove Object, String, and Class
-        filled.remove(0);
-        filled.remove(0);
-        filled.remove(0);
+        // remove the built in classes
+        filled.subList(0, builtIns).clear();
 
         // after processing everything, re-arrange methods so they match their v-table representations
-        for (ObjectRep rep : filled) {
-            // fix methods forall non Object, String, Class objects
-            ObjectRep newRep = processMethods(rep);
-            int index = filled.getIndexFromName(rep.name);
-            filled.set(index, newRep);
-            // again, don't forget to update the parents after replacing so that logic works, "bubbling down"
-            for (ObjectRep repSub : filled) {
-                if (repSub.parent != null) {
-                    int parentIndex = filled.getIndexFromName(repSub.parent.name);
-                    if (parentIndex != -1) repSub.parent = filled.get(parentIndex);
-                }
-            }
-        }
+        for (ObjectRep rep : filled) processMethods(rep);
 
         return filled;
     }
@@ -478,30 +425,29 @@ public class Phase2 {
      * @return  filled ObjectRepList with proper inheritance hierarchy
      */
     public static ObjectRepList fill(ObjectRepList filled, ObjectRepList unfilled) {
+        return fill(filled, unfilled, new HashMap<String, String>());
+    }
 
-        //Add classes from unfilled, keep doing this until filled has same size as unfilled
-        while (filled.size() < unfilled.size() + 3) {
-
-            for (ObjectRep rep : unfilled) {
-
-                // if no parent set parent to object's rep, which will be at filled.get(0)
-                if (rep.parent == null) {
-                    rep.parent = filled.get(0);
-                }
+    /**
+     * Same as fill(ObjectRepList, ObjectRepList) but records the inheritance in the given map
+     *
+     * @param   filled ObjectRepList with just Object, String and Class
+     * @param unfilled ObjectRepList of visitor processed Objects
+     * @param inheritance map of children to their parents, filled by this method
+     *
+     * @return  filled ObjectRepList with proper inheritance hierarchy
+     */
+    public static ObjectRepList fill(ObjectRepList filled, ObjectRepList unfilled, Map<String, String> inheritance) {
 
-                // don't add until parent class is already in filled, this makes sure classes are in inheritance order, i.e. if a class inherits a class it should be further down the list
-                if (filled.getFromName(rep.parent.name) != null) {
-                    int parent_idx = filled.getIndexFromName(rep.parent.name);
-                    rep.parent = filled.get(parent_idx);
-                    filled.add(rep);
-                }
-            }
-        }
+        // order classes so that every class follows its parent and point them to their parents
+        ClassHierarchy hierarchy = new ClassHierarchy(filled, unfilled);
+        List<ObjectRep> ordered = hierarchy.getOrder();
+        filled.addAll(ordered.subList(filled.size(), ordered.size()));
 
         // processparents here too
         for (ObjectRep rep : filled) {
-            if (rep.parent != null && rep.parent.equals(filled.get(0))) childrenToParents.put(rep.name, "");
-            else if (rep.parent != null) childrenToParents.put(rep.name, rep.parent.name);
+            if (rep.parent != null && rep.parent.equals(filled.get(0))) inheritance.put(rep.name, "");
+            else if (rep.parent != null) inheritance.put(rep.name, rep.parent.name);
         }
 
         return filled;
@@ -760,88 +706,98 @@ public class Phase2 {
         ArrayList<Field> updatedFields = new ArrayList<Field>();
         ArrayList<VMethod> updatedVMethods = new ArrayList<VMethod>();
 
+        // methods of current by name, in declaration order, so each parent slot finds its overrides with one lookup
+        HashMap<String, ArrayList<Method>> overrides = new HashMap<String, ArrayList<Method>>();
+        for (Method currentMethod : currentMethods) {
+            ArrayList<Method> sameName = overrides.get(currentMethod.name);
+            if (sameName == null) {
+                sameName = new ArrayList<Method>();
+                overrides.put(currentMethod.name, sameName);
+            }
+            sameName.add(currentMethod);
+        }
+
         // determine method declarations dependent on parent declarations (overwritten or not)
+        // parent is always resolved before current, so its vtable already holds the final slots
         for (Field parentField : parentFields) {
-            // boolean to check if something was updated
-            boolean notUpdated = true;
-            // loop over current methods to determine what has been overwritten and what hasn't, this will ensure preservation of order too
-            for (Method currentMethod : currentMethods) {
-                // if method is overwritten by child, need extra processing, ignore class definition
-                if (checkTwoNames(parentField.fieldName, currentMethod.name) && parentField.isStatic == false && !parentField.accessModifier.equals("private")) {
-                    // process parameters correctly into field declaration
-                    String parameters = "";
-                    ArrayList<Parameter> params = currentMethod.parameters;
-                    int idx = 0;
-                    for (Parameter param : params) {
-                        if (idx == 0) {
-                            parameters += param.type;
-                            idx++;
-                        } else parameters += "," + param.type;
-                    }
-                    Field temp = new Field(currentMethod.accessModifier, false, currentMethod.returnType, "*"+currentMethod.name, parameters);
+            // static and private slots are not inherited
+            if (parentField.isStatic != false || parentField.accessModifier.equals("private")) continue;
+
+            String slotName = stripPointer(parentField.fieldName);
+            ArrayList<Method> overriding = overrides.get(slotName);
+
+            // if method is overwritten by child, need extra processing, ignore class definition
+            if (overriding != null) {
+                for (Method currentMethod : overriding) {
+                    Field temp = new Field(currentMethod.accessModifier, false, currentMethod.returnType, "*"+currentMethod.name, parameterTypes(currentMethod));
                     temp.inheritedFrom = current.name;
                     updatedFields.add(temp);
-                    notUpdated = false;
-                    // process parameters correctly into a vMethod declaration
                     updatedVMethods.add(new VMethod(currentMethod.accessModifier, false, currentMethod.name, "(&__"+current.name+"::"+currentMethod.name+")"));
                 }
             }
             // if method wasn't overwritten and is not class (which is initialized in ObjectRep creation), modify its args and simply add to updated_fields list, also add inheritnce to updated vMethods list (these will refer to Object)
-            if (notUpdated && parentField.isStatic == false && !parentField.accessModifier.equals("private")) {
-                if (parentField.fieldName.equals("*__delete")) {
-                    updatedFields.add(new Field("public", false, "void", "*__delete", "__" + current.name + "*"));
-                    updatedVMethods.add(new VMethod("public", false, "__delete", "(&__rt::__delete<__" + current.name + ">)"));
-                } else {
-                    String inheritedFrom = "";
-                    if (parentField.inheritedFrom.equals("")) inheritedFrom = "Object";
-                    else inheritedFrom = parentField.inheritedFrom;
-                    Field temp = new Field(parentField.accessModifier, parentField.isStatic, parentField.fieldType, parentField.fieldName, parentField.initial.replaceFirst(parent.name, current.name));
-                    temp.inheritedFrom = inheritedFrom;
-                    updatedFields.add(temp);
-                    if (parentField.fieldName.equals("__is_a")) updatedVMethods.add(__is_a);
-                    else updatedVMethods.add(new VMethod(parentField.accessModifier, parentField.isStatic, parentField.fieldName.replaceFirst("\\*",""), "(("+parentField.fieldType+"(*)("+parentField.initial.replaceFirst(parent.name, current.name)+")) &__"+inheritedFrom+"::"+parentField.fieldName.replaceFirst("\\*","")+")"));
-                }
+            else if (parentField.fieldName.equals("*__delete")) {
+                updatedFields.add(new Field("public", false, "void", "*__delete", "__" + current.name + "*"));
+                updatedVMethods.add(new VMethod("public", false, "__delete", "(&__rt::__delete<__" + current.name + ">)"));
+            } else {
+                String inheritedFrom = "";
+                if (parentField.inheritedFrom.equals("")) inheritedFrom = "Object";
+                else inheritedFrom = parentField.inheritedFrom;
+                String initial = replaceFirst(parentField.initial, parent.name, current.name);
+                Field temp = new Field(parentField.accessModifier, parentField.isStatic, parentField.fieldType, parentField.fieldName, initial);
+                temp.inheritedFrom = inheritedFrom;
+                updatedFields.add(temp);
+                if (parentField.fieldName.equals("__is_a")) updatedVMethods.add(__is_a);
+                else updatedVMethods.add(new VMethod(parentField.accessModifier, parentField.isStatic, slotName, "(("+parentField.fieldType+"(*)("+initial+")) &__"+inheritedFrom+"::"+slotName+")"));
             }
         }
 
-        ArrayList<Field> updatedFieldsPrime = new ArrayList<Field>();
-        ArrayList<VMethod> updatedVMethodsPrime = new ArrayList<VMethod>();
-
         // use hashset of names for uniqueness property
         HashSet<String> updatedFieldSet = new HashSet<String>();
-        for (Field updatedField : updatedFields) updatedFieldSet.add(updatedField.fieldName.replaceFirst("\\*",""));
+        for (Field updatedField : updatedFields) updatedFieldSet.add(stripPointer(updatedField.fieldName));
 
         // dump rest of methods in current_methods into updated_fields and set precedent for order + preserve order
         for (Method currentMethod : currentMethods) {
             // if not already declared, declare it now, also ignore private methods since they do not get vtable entries, also ignore static methods since they do not get vtable entries too
             if (!updatedFieldSet.contains(currentMethod.name) && !currentMethod.accessModifier.equals("private") && currentMethod.isStatic == false) {
-                // process parameters correctly into field declaration
-                String parameters = "";
-                ArrayList<Parameter> params = currentMethod.parameters;
-                int idx = 0;
-                for (Parameter param : params) {
-                    if (idx == 0) {
-                        parameters += param.type;
-                        idx++;
-                    } else parameters +=  "," + param.type;
-                }
-                Field temp = new Field(currentMethod.accessModifier, false, currentMethod.returnType, "*"+currentMethod.name, parameters);
+                Field temp = new Field(currentMethod.accessModifier, false, currentMethod.returnType, "*"+currentMethod.name, parameterTypes(currentMethod));
                 temp.inheritedFrom = current.name;
-                updatedFieldsPrime.add(temp);
+                updatedFields.add(temp);
                 // ("+currentMethod.returnType+"(*)("+parameters+")) this was removed from init, keeping it here just in case
-                updatedVMethodsPrime.add(new VMethod(currentMethod.accessModifier, false, currentMethod.name, "(&__"+current.name+"::"+currentMethod.name+")"));
+                updatedVMethods.add(new VMethod(currentMethod.accessModifier, false, currentMethod.name, "(&__"+current.name+"::"+currentMethod.name+")"));
             }
         }
 
-        for (Field field : updatedFieldsPrime) updatedFields.add(field);
-        for (VMethod vmethod : updatedVMethodsPrime) updatedVMethods.add(vmethod);
-
         current.vtable.fields = updatedFields;
         current.vtable.methods = updatedVMethods;
 
         return current;
     }
 
+    // parameter types of a method separated by commas, as used in vtable declarations
+    private static String parameterTypes(Method method) {
+        StringBuilder parameters = new StringBuilder();
+        for (Parameter param : method.parameters) {
+            if (parameters.length() > 0) parameters.append(',');
+            parameters.append(param.type);
+        }
+        return parameters.toString();
+    }
+
+    // removes the first pointer (*) operator from a name
+    private static String stripPointer(String name) {
+        int star = name.indexOf('*');
+        if (star < 0) return name;
+        return name.substring(0, star) + name.substring(star + 1);
+    }
+
+    // replaces the first occurrence of target, taken literally
+    private static String replaceFirst(String s, String target, String replacement) {
+        int i = s.indexOf(target);
+        if (i < 0) return s;
+        return s.substring(0, i) + replacement + s.substring(i + target.length());
+    }
+
     /**
      * Helper method for determineVTable, checks if two string are equals
      * Preprocessing step of removes pointer (*) operator from name of name1
@@ -853,176 +809,19 @@ public class Phase2 {
      *
      */
     public static boolean checkTwoNames(String name1, String name2) {
-        if (name1.replaceFirst("\\*","").equals(name2)) return true;
-        return false;
+        return stripPointer(name1).equals(name2);
     }
 
     /**
-     * Initializes ObjectReps for Object, String and Class layout and structures
-     * manually with hard coding, Object is necessary and String and Class are
-     * hardcoded just in case they may be needed in the future
+     * Puts the ObjectReps of the built in classes, Object, String and Class, in a new list
+     * the reps are loaded once from java.lang.builtins, see BuiltInClasses, and shared by every
+     * call, they must only be read
      *
-     * @return filled ObjectRepList with Object, String and Class hard coded
+     * @return ObjectRepList with the built in classes, Object first
      */
     public static ObjectRepList initializeRepList() {
-
         ObjectRepList filled = new ObjectRepList();
-
-        // Adding java.lang structure manually for Object
-        ObjectRep objectRep = new ObjectRep("Object");
-        ArrayList<Parameter> params = new ArrayList<Parameter>();
-        params.add(new Parameter("Object", "o"));
-        Method hashCode = new Method("public", true, "int32_t", "hashCode", params);
-        objectRep.classRep.methods.add(hashCode);
-        params.add(new Parameter("Object", "o"));
-        Method equals = new Method("public", true, "bool", "equals", params);
-        objectRep.classRep.methods.add(equals);
-        params.remove(1);
-        Method getClass = new Method("public", true, "Class", "getClass", params);
-        objectRep.classRep.methods.add(getClass);
-        Method toString = new Method("public", true, "String", "toString", params);
-        objectRep.classRep.methods.add(toString);
-        // class representation for Object filled, now do V-Table filling
-        Field v_delete = new Field("public", false, "void", "*__delete", "__Object*");
-        objectRep.vtable.fields.add(v_delete);
-        Field v_hashCode = new Field("public", false, "int32_t", "*hashCode", "Object");
-        objectRep.vtable.fields.add(v_hashCode);
-        Field v_equals = new Field("public", false, "bool", "*equals", "Object, Object");
-        objectRep.vtable.fields.add(v_equals);
-        Field v_getClass = new Field("public", false, "Class", "*getClass", "Object");
-        objectRep.vtable.fields.add(v_getClass);
-        Field v_toString = new Field("public", false, "String", "*toString", "Object");
-        objectRep.vtable.fields.add(v_toString);
-        VMethod v_method_delete = new VMethod("public", false, "__delete", "(&__rt::__delete<__Object>)");
-        objectRep.vtable.methods.add(v_method_delete);
-        VMethod v_method_hashCode = new VMethod("public", false, "hashCode", "(&__Object::__hashCode)");
-        objectRep.vtable.methods.add(v_method_hashCode);
-        VMethod v_method_equals = new VMethod("public", false, "equals", "(&__Object::__equals)");
-        objectRep.vtable.methods.add(v_method_equals);
-        VMethod v_method_getClass = new VMethod("public", false, "getClass", "(&__Object::__getClass)");
-        objectRep.vtable.methods.add(v_method_getClass);
-        VMethod v_method_toString = new VMethod("public", false, "toString", "(&__Object::__toString)");
-        objectRep.vtable.methods.add(v_method_toString);
-        // set parent to null
-        objectRep.parent = null;
-        // object is created!
-        filled.add(objectRep);
-
-        // Adding java.lang structure manually for String
-        ObjectRep stringRep = new ObjectRep("String");
-        Field data = new Field("public", false, "std::string", "data", "");
-        stringRep.classRep.fields.add(data);
-        params = new ArrayList<Parameter>();
-        params.add(new Parameter("std::string", "data"));
-        Constructor stringConstructor = new Constructor("public", "__String", params);
-        stringRep.classRep.constructors.remove(0);
-        stringRep.classRep.constructors.add(stringConstructor);
-        params = new ArrayList<Parameter>();
-        params.add(new Parameter("String", "str"));
-        hashCode = new Method("public", true, "int32_t", "hashCode", params);
-        stringRep.classRep.methods.add(hashCode);
-        params.add(new Parameter("Object", "o"));
-        equals = new Method("public", true, "bool", "equals", params);
-        stringRep.classRep.methods.add(equals);
-        params.remove(1);
-        toString = new Method("public", true, "int32_t", "length", params);
-        stringRep.classRep.methods.add(toString);
-        params.add(new Parameter("int32_t", "int_length"));
-        Method charAt = new Method("public", true, "char", "charAt", params);
-        stringRep.classRep.methods.add(charAt);
-        // class representation for String filled, now do V-Table filling
-        v_delete = new Field("public", false, "void", "*__delete", "__String*");
-        stringRep.vtable.fields.add(v_delete);
-        v_hashCode = new Field("public", false, "int32_t", "*hashCode", "String");
-        stringRep.vtable.fields.add(v_hashCode);
-        v_equals = new Field("public", false, "bool", "*equals", "String, Object");
-        stringRep.vtable.fields.add(v_equals);
-        v_getClass = new Field("public", false, "Class", "*getClass", "String");
-        stringRep.vtable.fields.add(v_getClass);
-        v_toString = new Field("public", false, "String", "*toString", "String");
-        stringRep.vtable.fields.add(v_toString);
-        Field v_length = new Field("public", false, "int32_t", "*length", "String");
-        stringRep.vtable.fields.add(v_length);
-        Field v_charAt = new Field("public", false, "char", "*charAt", "String");
-        stringRep.vtable.fields.add(v_charAt);
-        v_method_delete = new VMethod("public", false, "__delete", "(&__rt::__delete<__String>)");
-        stringRep.vtable.methods.add(v_method_delete);
-        v_method_hashCode = new VMethod("public", false, "hashCode", "(&__String::__hashCode())");
-        stringRep.vtable.methods.add(v_method_hashCode);
-        v_method_equals = new VMethod("public", false, "equals", "(&__String::equals)");
-        stringRep.vtable.methods.add(v_method_equals);
-        v_method_getClass = new VMethod("public", false, "getClass", "((Class(*)(String)) &__Object::getClass");
-        stringRep.vtable.methods.add(v_method_getClass);
-        v_method_toString = new VMethod("public", false, "toString", "(&__toString::toString)");
-        stringRep.vtable.methods.add(v_method_toString);
-        VMethod v_method_charAt = new VMethod("public", false, "charAt", "(&__String::charAt)");
-        stringRep.vtable.methods.add(v_method_charAt);
-        // set parent to Object
-        stringRep.parent = objectRep;
-        // String is created!
-        filled.add(stringRep);
-
-        // Adding java.lang structure manually for Class
-        ObjectRep classRep = new ObjectRep("Class");
-        Field name = new Field("public", false, "String", "name", "");
-        classRep.classRep.fields.add(name);
-        Field parent = new Field("public", false, "Class", "parent", "");
-        classRep.classRep.fields.add(parent);
-        params = new ArrayList<Parameter>();
-        params.add(new Parameter("String", "name"));
-        params.add(new Parameter("Class", "parent"));
-        Constructor classConstructor = new Constructor("public", "__Class", params);
-        classRep.classRep.constructors.remove(0);
-        classRep.classRep.constructors.add(classConstructor);
-        params = new ArrayList<Parameter>();
-        params.add(new Parameter("Class", "c"));
-        toString = new Method("public", true, "String", "toString", params);
-        classRep.classRep.methods.add(toString);
-        Method getName = new Method("public", true, "String", "getName", params);
-        classRep.classRep.methods.add(getName);
-        Method getSuperClass = new Method("public", true, "Class", "getSuperclass", params);
-        classRep.classRep.methods.add(getSuperClass);
-        params.add(new Parameter("Object", "o"));
-        Method isInstance = new Method("public", true, "bool", "isInstance", params);
-        classRep.classRep.methods.add(isInstance);
-        // class representation for Class filled, now do V-Table filling
-        v_delete = new Field("public", false, "void", "*__delete", "__Class*");
-        classRep.vtable.fields.add(v_delete);
-        v_hashCode = new Field("public", false, "int32_t", "*hashCode", "Class");
-        classRep.vtable.fields.add(v_hashCode);
-        v_equals = new Field("public", false, "bool", "*equals", "Class, Object");
-        classRep.vtable.fields.add(v_equals);
-        v_getClass = new Field("public", false, "Class", "*getClass", "Class");
-        classRep.vtable.fields.add(v_getClass);
-        v_toString = new Field("public", false, "String", "*toString", "Class");
-        classRep.vtable.fields.add(v_toString);
-        Field v_getName = new Field("public", false, "String", "*getName", "Class");
-        classRep.vtable.fields.add(v_getName);
-        Field v_getSuperClass = new Field("public", false, "String", "*getSuperclass", "Class");
-        classRep.vtable.fields.add(v_getSuperClass);
-        Field v_isInstance = new Field("public", false, "String", "*isInstance", "Class");
-        classRep.vtable.fields.add(v_isInstance);
-        v_method_delete = new VMethod("public", false, "__delete", "(&__rt::__delete<__Class>)");
-        classRep.vtable.methods.add(v_method_delete);
-        v_method_hashCode = new VMethod("public", false, "hashCode", "((int32_t(*)(Class)) &__Object::hashCode)");
-        classRep.vtable.methods.add(v_method_hashCode);
-        v_method_equals = new VMethod("public", false, "equals", "((bool(*)(Class,Object)) &__Object::equals)");
-        classRep.vtable.methods.add(v_method_equals);
-        v_method_getClass = new VMethod("public", false, "getClass", "((Class(*)(Class)) &__Object::getClass)");
-        classRep.vtable.methods.add(v_method_getClass);
-        v_method_toString = new VMethod("public", false, "toString", "(&__Class::toString)");
-        classRep.vtable.methods.add(v_method_toString);
-        VMethod v_method_getName = new VMethod("public", false, "getName", "(&__Class::getName)");
-        classRep.vtable.methods.add(v_method_getName);
-        VMethod v_method_getSuperClass = new VMethod("public", false, "getSuperclass", "(&__Class::getSuperclass)");
-        classRep.vtable.methods.add(v_method_getSuperClass);
-        VMethod v_method_isInstance = new VMethod("public", false, "isInstance", "(&__Class::isInstance)");
-        classRep.vtable.methods.add(v_method_isInstance);
-        // set parent to object
-        classRep.parent = objectRep;
-        // class is created!
-        filled.add(classRep);
-
+        filled.addAll(BuiltInClasses.get());
         return filled;
     }
 
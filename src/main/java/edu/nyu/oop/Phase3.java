@@ -6,7 +6,10 @@
  * Phase3 constructor initializes Phase3 and the printer used for printing
  * visitABC methods visit relevant nodes (e.g. ABC node will be visited)
  * headOfFile() and endOfFile() does some simple pre and post processing
- * print method flushes output of printer to file
+ * print method prints one C++ AST, the output is kept in memory and only written when close()
+ * is called, a Phase3 that is never closed writes no output.h
+ * in sharded mode output.h only includes forward.h, holding the forward declarations, and one
+ * header per class, named after the qualified name of the class, in the order of the classes
  * logic has been fully seperated so that Phase 2 and Phase 3 are
  * independent of each other, some logic here has been moved to Phase 2
  * to ensure full seperation of phases
@@ -25,24 +28,41 @@ import xtc.tree.Node;
 import xtc.tree.Printer;
 import xtc.tree.Visitor;
 
+import edu.nyu.oop.util.DirectorySink;
+import edu.nyu.oop.util.OutputFile;
+import edu.nyu.oop.util.OutputSink;
 import edu.nyu.oop.util.XtcProps;
 
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /** Print out the information in the Inheritance AST in a concrete C++ syntax */
 
 public class Phase3 extends Visitor {
 
+    private static final Pattern NAMESPACE = Pattern.compile("namespace\\s+(\\w+)");
+
     private Logger logger = org.slf4j.LoggerFactory.getLogger(this.getClass());
 
     private  Printer printer;
 
-    private String outputLocation = XtcProps.get("output.location");
+    private OutputFile output;
+
+    private String outputLocation;
+
+    // sharded mode, output.h includes the headers printer prints into
+    private OutputSink sink;
+    private boolean sharded = false;
+    private Printer umbrella;
+    private OutputFile forward;
+    private boolean shardsWritten = false;
+    private String namespaces = "";
+    private ArrayList<String> headers = new ArrayList<String>();
 
     String className;
 
@@ -58,18 +78,58 @@ public class Phase3 extends Visitor {
     ArrayList<String> methods = new ArrayList<String>();
 
     public Phase3() {
+        this(XtcProps.get("output.location"));
+    }
+
+    /**
+     * Prints output.h into the given directory instead of output.location
+     *
+     * @param outputLocation output directory, ending with a slash
+     */
+    public Phase3(String outputLocation) {
+        this(directory(outputLocation));
+        this.outputLocation = outputLocation;
+    }
+
+    /**
+     * Prints output.h into an output sink
+     *
+     * @param sink sink output.h is written to
+     */
+    public Phase3(OutputSink sink) {
+        this(sink, false);
+    }
+
+    /**
+     * Prints output.h into an output sink, in sharded mode together with forward.h and one header per class
+     *
+     * @param sink sink the headers are written to
+     * @param sharded true to print one header per class
+     */
+    public Phase3(OutputSink sink, boolean sharded) {
+        this.sink = sink;
+        this.sharded = sharded;
+        output = new OutputFile(sink, "output.h");
+        this.printer = new Printer(output);
+
+        if (sharded) {
+            umbrella = printer;
+            umbrella.pln("#pragma once");
+            umbrella.pln();
+            umbrella.pln("#include \"forward.h\"");
+            umbrella.pln();
+            forward = new OutputFile(sink, "forward.h");
+            this.printer = new Printer(forward);
+        }
+        printer.register(this);
+    }
 
-        Writer w = null;
+    private static OutputSink directory(String outputLocation) {
         try {
-            FileOutputStream fos = new FileOutputStream(outputLocation + "output.h");
-            OutputStreamWriter ows = new OutputStreamWriter(fos, "utf-8");
-            w = new BufferedWriter(ows);
-            this.printer = new Printer(w);
+            return new DirectorySink(new File(outputLocation));
         } catch (Exception e) {
             throw new RuntimeException("Output location not found. Create the /output directory.");
         }
-
-        printer.register(this);
     }
 
     public void print(GNode ast) {
@@ -79,6 +139,45 @@ public class Phase3 extends Visitor {
         printer.flush();
     }
 
+    /**
+     * Writes output.h, the file is left untouched when its contents did not change
+     *
+     * @return true if output.h was rewritten
+     */
+    public boolean close() {
+        printer.flush();
+        try {
+            if (sharded) {
+                forward.close();
+                shardsWritten |= forward.isWritten();
+            }
+            output.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write " + output, e);
+        }
+        return output.isWritten() || shardsWritten;
+    }
+
+    /**
+     * @return names of the class headers printed in sharded mode, in the order of the classes
+     */
+    public ArrayList<String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return names of every header printed, output.h and in sharded mode forward.h and the class headers
+     */
+    public List<String> files() {
+        List<String> files = new ArrayList<String>();
+        files.add("output.h");
+        if (sharded) {
+            files.add("forward.h");
+            files.addAll(headers);
+        }
+        return files;
+    }
+
     private void headOfFile() {
         header = "#pragma once\n\n#include <stdint.h>\n#include <string>";
         printer.pln("#pragma once");
@@ -102,6 +201,7 @@ public class Phase3 extends Visitor {
     public void visitPackageDeclaration(GNode node) {
         packageDeclaration = "namespace " + node.getString(0) + "{\nnamespace javalang {";
         printer.pln(node.getString(0));
+        namespaces = node.getString(0);
         //printer.pln("namespace " + node.getString(0) + "{");
         //printer.pln("namespace javalang {");
         //printer.pln();
@@ -128,7 +228,51 @@ public class Phase3 extends Visitor {
     public void visitClassDeclaration(GNode node) {
         className = node.getString(0);
         classes.add(className);
+        if (sharded) printShard(node);
+        else visit(node);
+    }
+
+    // prints the class into its own header that output.h includes
+    private void printShard(GNode node) {
+        String name = qualifiedName(namespaces, className.substring(2)) + ".h";
+        headers.add(name);
+        umbrella.pln("#include \"" + name + "\"");
+
+        Printer forwardPrinter = printer;
+        OutputFile shard = new OutputFile(sink, name);
+        printer = new Printer(shard);
+        printer.register(this);
+
+        printer.pln("#pragma once");
+        printer.pln();
+        printer.pln("#include \"forward.h\"");
+        printer.pln();
+        printer.pln(namespaces);
+        printer.incr();
         visit(node);
+        endOfFile();
+        printer.flush();
+        try {
+            shard.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write " + shard, e);
+        }
+        shardsWritten |= shard.isWritten();
+        printer = forwardPrinter;
+    }
+
+    /**
+     * Qualified name of a class, from the namespaces of its package as Phase 2 prints them
+     *
+     * @param namespaces namespace declarations of the package
+     * @param name simple name of the class
+     * @return package and class name separated by dots
+     */
+    static String qualifiedName(String namespaces, String name) {
+        StringBuilder qualified = new StringBuilder();
+        Matcher m = NAMESPACE.matcher(namespaces);
+        while (m.find()) qualified.append(m.group(1)).append('.');
+        return qualified.append(name).toString();
     }
 
     public void visitDataLayout(GNode node) {
@@ -23,28 +23,40 @@ import xtc.util.SymbolTable;
 import xtc.util.Runtime;
 
 import edu.nyu.oop.util.NodeUtil;
+import edu.nyu.oop.util.OrderedTasks;
+import edu.nyu.oop.util.Profiler;
 import edu.nyu.oop.util.SymbolTableBuilder;
 import edu.nyu.oop.util.SymbolTableUtil;
+import edu.nyu.oop.util.XtcProps;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.Callable;
 
 /* Building C++ style AST given a root node of a java AST */
 public class Phase4 {
 
     private Runtime runtime;
-    private HashMap<String, String> childrenToParents = new HashMap<String, String>();
-    private HashMap<String, ArrayList<Phase1.Initializer>> inits = new HashMap<String, ArrayList<Phase1.Initializer>>();
-    private HashMap<String, ArrayList<Phase1.Initializer>> formerInits = new HashMap<String, ArrayList<Phase1.Initializer>>();
+    private HashMap<String, String> childrenToParents = new LinkedHashMap<String, String>();
+    private HashMap<String, ArrayList<Phase1.Initializer>> inits = new LinkedHashMap<String, ArrayList<Phase1.Initializer>>();
+    private HashMap<String, ArrayList<Phase1.Initializer>> formerInits = new LinkedHashMap<String, ArrayList<Phase1.Initializer>>();
+
+    // read only views of the maps above, shared by the visitors of all ASTs once the initializers are resolved
+    private Map<String, String> frozenChildrenToParents;
+    private Map<String, List<Phase1.Initializer>> frozenInits;
+    private Map<String, List<Phase1.Initializer>> frozenFormerInits;
 
     // public ArrayList<BigArray> bigArrays = new ArrayList<BigArray>();  // no longer needed
     public ArrayList<PrimitiveArray> primitiveArrays = new ArrayList<PrimitiveArray>();
 
     public Phase4(Runtime runtime) {
         this.runtime = runtime;
+        freeze();
     }
 
     public Phase4(Runtime runtime, HashMap<String, String> childrenToParents, HashMap<String, ArrayList<Phase1.Initializer>> inits) {
@@ -62,6 +74,22 @@ public class Phase4 {
 
         // we need to resolve all initializers
         resolveInitializers();
+        freeze();
+    }
+
+    /* makes the read only views of the maps the visitors share, the visitors of different ASTs may run at the same time */
+    private void freeze() {
+        frozenChildrenToParents = Collections.unmodifiableMap(childrenToParents);
+        frozenInits = freeze(inits);
+        frozenFormerInits = freeze(formerInits);
+    }
+
+    private static Map<String, List<Phase1.Initializer>> freeze(HashMap<String, ArrayList<Phase1.Initializer>> m) {
+        Map<String, List<Phase1.Initializer>> frozen = new LinkedHashMap<String, List<Phase1.Initializer>>();
+        for (String key : m.keySet()) {
+            frozen.put(key, Collections.unmodifiableList(new ArrayList<Phase1.Initializer>(m.get(key))));
+        }
+        return Collections.unmodifiableMap(frozen);
     }
 
     /** 
@@ -69,80 +97,101 @@ public class Phase4 {
      * resolves all inheritance issue with all fields
      * determines if field is initialized to a different value
      * uses childrenToParents to accomplish this
+     * every class is resolved once, after its parent, and extends the resolved list of its parent
      *
      */
     public void resolveInitializers() {
+        HashMap<String, ArrayList<Phase1.Initializer>> resolved = new LinkedHashMap<String, ArrayList<Phase1.Initializer>>();
+        for (String key : childrenToParents.keySet()) resolveInitializers(key, resolved);
 
-        for (String key : childrenToParents.keySet()) {
-
-            // use a stack to resolve all initializations
-            String toUpdate = key;
-            Stack<String> stack = new Stack<String>();
-            stack.push(key);
-            String temp = key;
-
-            // find all parents, push to stack
-            while (!childrenToParents.get(temp).equals("")) {
-                stack.push(childrenToParents.get(temp));
-                temp = childrenToParents.get(temp);
-            }
-
-            ArrayList<Phase1.Initializer> tmpInit = inits.get(stack.pop());
-            ArrayList<Phase1.Initializer> start = new ArrayList<Phase1.Initializer>();
-
-            if (tmpInit != null) {
-                for (int i = 0; i < tmpInit.size(); i ++) start.add(tmpInit.get(i));
-            }
+        // the lists of all classes are replaced at the end, every class extends the unresolved list of its own fields
+        inits.putAll(resolved);
+    }
 
-            // empty the stack
-            while (!stack.empty()) {
-
-                // resolve initializations
-                ArrayList<Phase1.Initializer> tempList = inits.get(stack.pop());
-                for (Phase1.Initializer elem : tempList) {
-                    if (!elem.isStatic) {
-                        boolean addFlag = true;
-                        for (int i = 0; i < start.size(); i++) {
-                            if (elem.name.equals(start.get(i).name) && elem.typeName.equals(start.get(i).typeName)) {
-                                start.set(i, elem);
-                                addFlag = false;
-                            }
-                        }
-                        if (addFlag) start.add(elem);
+    /** 
+     * Helper method: resolveInitializers
+     * resolves the initializers of a class and of its ancestors that are not resolved yet
+     * a class directly under Object starts with all of its own initializers, every other class starts
+     * with the resolved initializers of its parent, its own non static initializers replace the
+     * inherited ones with the same name and type, the others are appended
+     *
+     * @param      name  name of the class
+     * @param  resolved  resolved initializers by class name
+     * @return           resolved initializers of the class
+     */
+    private ArrayList<Phase1.Initializer> resolveInitializers(String name, HashMap<String, ArrayList<Phase1.Initializer>> resolved) {
+        ArrayList<Phase1.Initializer> start = resolved.get(name);
+        if (start != null) return start;
+
+        ArrayList<Phase1.Initializer> own = inits.get(name);
+        String parent = childrenToParents.get(name);
+
+        if (parent.equals("")) {
+            start = own == null ? new ArrayList<Phase1.Initializer>() : new ArrayList<Phase1.Initializer>(own);
+        } else {
+            start = new ArrayList<Phase1.Initializer>(resolveInitializers(parent, resolved));
+
+            // positions of the initializers by name and type
+            HashMap<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+            for (int i = 0; i < start.size(); i++) position(positions, start.get(i)).add(i);
+
+            if (own != null) {
+                for (Phase1.Initializer elem : own) {
+                    if (elem.isStatic) continue;
+
+                    List<Integer> at = position(positions, elem);
+                    if (at.isEmpty()) {
+                        at.add(start.size());
+                        start.add(elem);
+                    } else {
+                        for (int i : at) start.set(i, elem);
                     }
                 }
             }
+        }
+
+        resolved.put(name, start);
+        return start;
+    }
 
-            inits.put(toUpdate, start);
+    // positions of the initializers with the name and type of elem
+    private static List<Integer> position(HashMap<String, List<Integer>> positions, Phase1.Initializer elem) {
+        String key = elem.name + " " + elem.typeName;
+        List<Integer> at = positions.get(key);
+        if (at == null) {
+            at = new ArrayList<Integer>();
+            positions.put(key, at);
         }
+        return at;
     }
 
-    /* process a list of nodes */
+    /* process a list of nodes, building a symbol table for each */
     public List<GNode> process(List<GNode> l) {
-
-        ArrayList<GNode> cppAst = new ArrayList<GNode>();
-
-        for (Object o : l) {
-            if (o instanceof Node) {
-                cppAst.add((GNode) o);
-            }
+        List<SymbolTable> tables = new ArrayList<SymbolTable>();
+        for (GNode n : l) {
+            tables.add(new SymbolTableBuilder(runtime).getTable(n));
         }
+        return process(l, tables);
+    }
+
+    /* process a list of nodes with the symbol tables already built for them, in the same order */
+    public List<GNode> process(List<GNode> l, List<SymbolTable> tables) {
 
-        for (Object o : cppAst) {
-            if (o instanceof Node) {
+        ArrayList<GNode> cppAst = new ArrayList<GNode>();
 
-                SymbolTable table = new SymbolTableBuilder(runtime).getTable((GNode) o);
-                Phase4Visitor visitor = new Phase4Visitor(table, runtime, formerInits, childrenToParents, inits);
-                visitor.traverse((Node) o);
+        for (int i = 0; i < l.size(); i++) {
+            GNode n = l.get(i);
+            Phase4Visitor visitor = new Phase4Visitor(tables.get(i), runtime, frozenFormerInits, frozenChildrenToParents, frozenInits);
+            visitor.traverse(n);
 
-                String info = "";
-                for (PrimitiveArray p : visitor.primitiveArrays) {
-                    info += p.dump();
-                }
-                if (!info.equals("")) {
-                    ((Node) o).setProperty("RuntimeInfo", info);
-                }
+            String info = "";
+            for (PrimitiveArray p : visitor.primitiveArrays) {
+                info += p.dump();
             }
+            if (!info.equals("")) {
+                n.setProperty("RuntimeInfo", info);
+            }
+            cppAst.add(n);
         }
 
         return cppAst;
@@ -150,12 +199,60 @@ public class Phase4 {
 
     /* process a single node */
     public Node runNode(Node n, SymbolTable table) {
+        addRuntimeInfo(n, lower(n, table));
+        return n;
+    }
+
+    /* process every node with its symbol table on phase4.threads threads */
+    public List<Node> runNodes(List<? extends Node> l, List<SymbolTable> tables) {
+        return runNodes(l, tables, XtcProps.getInt("phase4.threads", 1));
+    }
+
+    /** 
+     * process every node with its symbol table, the nodes are lowered at the same time on a pool of
+     * threads, each by its own visitor that only writes to its own node, the primitive arrays they
+     * find are added afterwards on the calling thread, in the order of the nodes
+     *
+     * @param       l  nodes to process
+     * @param  tables  symbol table of every node, in the same order
+     * @param threads  number of threads, 1 processes serially, 0 uses one thread per processor
+     * @return         the processed nodes, in the same order
+     */
+    public List<Node> runNodes(final List<? extends Node> l, final List<SymbolTable> tables, int threads) {
+        List<Callable<Phase4Visitor>> tasks = new ArrayList<Callable<Phase4Visitor>>();
+        for (int i = 0; i < l.size(); i++) {
+            final int node = i;
+            tasks.add(new Callable<Phase4Visitor>() {
+                public Phase4Visitor call() {
+                    Node n = l.get(node);
+                    Profiler.Sample sample = Profiler.start("Phase4.runNode", n.getLocation() == null ? "" : n.getLocation().file);
+                    Phase4Visitor visitor = lower(n, tables.get(node));
+                    sample.stop();
+                    return visitor;
+                }
+            });
+        }
+
+        List<Phase4Visitor> visitors = OrderedTasks.run(tasks, threads);
+        List<Node> result = new ArrayList<Node>();
+        for (int i = 0; i < l.size(); i++) {
+            addRuntimeInfo(l.get(i), visitors.get(i));
+            result.add(l.get(i));
+        }
+        return result;
+    }
 
-        //run the visitor
-        Phase4Visitor visitor = new Phase4Visitor(table, runtime, formerInits, childrenToParents, inits);
+    // runs the visitor over a node, reading only the frozen maps
+    private Phase4Visitor lower(Node n, SymbolTable table) {
+        Phase4Visitor visitor = new Phase4Visitor(table, runtime, frozenFormerInits, frozenChildrenToParents, frozenInits);
         visitor.traverse(n);
+        return visitor;
+    }
+
+    // adds the primitive array info a visitor found to its node and to the primitive arrays of all nodes
+    private void addRuntimeInfo(Node n, Phase4Visitor visitor) {
+        primitiveArrays.addAll(visitor.primitiveArrays);
 
-        //add primitive array info
         String info = "";
         for (PrimitiveArray p : visitor.primitiveArrays) {
             info += p.dump();
@@ -164,8 +261,6 @@ public class Phase4 {
             System.out.println(info);
             n.setProperty("RuntimeInfo", info);
         }
-
-        return n;
     }
 
     /* Visitor class used to modify java AST to C++ AST */
@@ -181,9 +276,9 @@ public class Phase4 {
         private String methodName = "";
         private String packageInfo = "";
         private boolean constructorFlag = false;
-        private HashMap<String, String> ctp;
-        private HashMap<String, ArrayList<Phase1.Initializer>> completedInits;
-        private HashMap<String, ArrayList<Phase1.Initializer>> formerInits;        
+        private Map<String, String> ctp;
+        private Map<String, List<Phase1.Initializer>> completedInits;
+        private Map<String, List<Phase1.Initializer>> formerInits;
         private boolean defaultConstructorNeeded = false;
 
         private SymbolTable table;
@@ -191,8 +286,8 @@ public class Phase4 {
         public ArrayList<BigArray> bigArrays = new ArrayList<BigArray>();
         public ArrayList<PrimitiveArray> primitiveArrays = new ArrayList<PrimitiveArray>();
 
-        public Phase4Visitor(SymbolTable table, Runtime runtime, HashMap<String, ArrayList<Phase1.Initializer>> formerInits,
-            HashMap<String, String> ctp, HashMap<String, ArrayList<Phase1.Initializer>> completedInits) {
+        public Phase4Visitor(SymbolTable table, Runtime runtime, Map<String, List<Phase1.Initializer>> formerInits,
+            Map<String, String> ctp, Map<String, List<Phase1.Initializer>> completedInits) {
             this.table = table;
             this.runtime = runtime;
             this.ctp = ctp;
@@ -343,7 +438,7 @@ public class Phase4 {
 
             // create a default constructor, add default initializations into it
             String defaultConstructor = "__" + currentClass + "::__" + currentClass + "() : ";
-            ArrayList<Phase1.Initializer> initializers = completedInits.get(currentClass);
+            List<Phase1.Initializer> initializers = completedInits.get(currentClass);
             for (Phase1.Initializer init: initializers) {
                 if (!init.isStatic) defaultConstructor += init.name + "(" + init.initial + "), ";
             }
@@ -478,7 +573,7 @@ public class Phase4 {
                         newBlock.add(GNode.create("Statement", "__" + parentName + "::__init(__this);\n"));
                         
                         String initStatements = "";
-                        ArrayList<Phase1.Initializer> initializers = formerInits.get(currentClass);
+                        List<Phase1.Initializer> initializers = formerInits.get(currentClass);
                         for (Phase1.Initializer init: initializers) {
                             if (!init.value.equals("") && !init.isStatic)
                                 initStatements += "__this -> " + init.name + " = " + init.value + ";\n";
@@ -946,7 +1041,7 @@ public class Phase4 {
 
                         // when this() is called, the initialization for data fields have been done
                         // String initStatements= "";
-                        // ArrayList<Phase1.Initializer> initializers = completedInits.get(currentClass);
+                        // List<Phase1.Initializer> initializers = completedInits.get(currentClass);
                         // for (Phase1.Initializer init: initializers) {
                         //     if (!init.value.equals("") && !init.isStatic)
                         //         initStatements += "__this -> " + init.name + " + " + init.value + ";\n";
@@ -970,7 +1065,7 @@ public class Phase4 {
 
                         // determine any other initialization that are necessary
                         String initStatements = "";
-                        ArrayList<Phase1.Initializer> initializers = formerInits.get(currentClass);
+                        List<Phase1.Initializer> initializers = formerInits.get(currentClass);
                         for (Phase1.Initializer init: initializers) {
                             if (!init.value.equals("") && !init.isStatic) initStatements += "__this -> " + init.name + " = " + init.value + ";\n";
                         }
@@ -1203,7 +1298,7 @@ public class Phase4 {
                         classIn = classInDetail[classInDetail.length - 1];
                     }
 
-                    ArrayList<Phase1.Initializer> classFields = completedInits.get(classIn);
+                    List<Phase1.Initializer> classFields = completedInits.get(classIn);
 
                     for (int i = 0; i < classFields.size(); i++) {
                         if (classFields.get(i).name.equals(secondaryKey)) {
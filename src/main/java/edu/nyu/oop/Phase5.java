@@ -1,6 +1,7 @@
 /**
  * Phase 5 printer that uses the Xtc's pretty printer to print the updated C++ ast from Phase 4
  * to output.cpp and main.cpp implementation files in C++ format.
+ * The output is kept in memory and only written when close() is called.
  * Note: use sbt's format command to format the final code for indentation
  *
  * @author Shenghao Lin
@@ -17,19 +18,24 @@ import xtc.tree.Node;
 import xtc.tree.Printer;
 import xtc.tree.Visitor;
 
+import edu.nyu.oop.util.DirectorySink;
+import edu.nyu.oop.util.OutputFile;
+import edu.nyu.oop.util.OutputSink;
 import edu.nyu.oop.util.XtcProps;
 import edu.nyu.oop.util.NodeUtil;
 
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Print out the information in the AST in a concrete C++ syntax generated from Phase 4
  * Under construction, working for most classes and methods
  * currently working on the seperation of main function
  * no indent
+ * in sharded mode every class is printed into its own source file, named after its qualified
+ * name, the main file only keeps the runtime array definitions
  */
 
 public class Phase5 extends Visitor {
@@ -38,7 +44,23 @@ public class Phase5 extends Visitor {
 
     private Printer printer;
 
-    private String outputLocation = XtcProps.get("output.location");
+    private OutputFile output;
+
+    private long emissionNanos;
+
+    private OutputSink sink;
+
+    private boolean sharded = false;
+
+    private boolean shardsWritten = false;
+
+    private List<String> namespaces = new ArrayList<String>();
+
+    private List<String> shards = new ArrayList<String>();
+
+    private List<String> files = new ArrayList<String>();
+
+    private String outputLocation;
 
     String packageInfo = "";
 
@@ -48,19 +70,69 @@ public class Phase5 extends Visitor {
 
     /* Class constructor. Intializing the writer to the file. */
     public Phase5(String name) {
+        this(XtcProps.get("output.location"), name);
+    }
+
+    /* Prints into the given directory, ending with a slash, instead of output.location. */
+    public Phase5(String outputLocation, String name) {
+        this(directory(outputLocation), name);
+        this.outputLocation = outputLocation;
+    }
+
+    /* Prints into the given output sink, main.cpp goes to the same sink. */
+    public Phase5(OutputSink sink, String name) {
+        this(sink, name, false);
+    }
 
-        Writer w = null;
+    /* Prints into the given output sink, in sharded mode every class goes into a source file of its own. */
+    public Phase5(OutputSink sink, String name, boolean sharded) {
+        this.sink = sink;
+        this.sharded = sharded;
+        output = new OutputFile(sink, name);
+        files.add(name);
+        this.printer = new Printer(output);
+        printer.register(this);
+    }
 
+    private static OutputSink directory(String outputLocation) {
         try {
-            FileOutputStream fos = new FileOutputStream(outputLocation + name);
-            OutputStreamWriter ows = new OutputStreamWriter(fos, "utf-8");
-            w = new BufferedWriter(ows);
-            this.printer = new Printer(w);
+            return new DirectorySink(new File(outputLocation));
         } catch (Exception e) {
             throw new RuntimeException("Output location not found. Create the /output directory.");
         }
+    }
 
-        printer.register(this);
+    /* Writes the file, it is left untouched when its contents did not change. Returns true if it was rewritten. */
+    public boolean close() {
+        printer.flush();
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write " + output, e);
+        }
+        logger.debug(output.getName() + ": " + output.getBytes() + " bytes, " + output.getWrites() + " writes, "
+                     + emissionNanos / 1000000 + " ms emitting, " + output.getWriteNanos() / 1000000 + " ms writing");
+        return output.isWritten() || shardsWritten;
+    }
+
+    /* Names of the class source files printed in sharded mode, in the order of the classes. */
+    public List<String> shards() {
+        return shards;
+    }
+
+    /* Names of every file printed, this one, main.cpp and the class source files. */
+    public List<String> files() {
+        return files;
+    }
+
+    /* File the code is emitted into, for its counts. */
+    public OutputFile output() {
+        return output;
+    }
+
+    /* Nanoseconds spent emitting code in print. */
+    public long emissionNanos() {
+        return emissionNanos;
     }
 
     public Printer printer() {
@@ -75,19 +147,24 @@ public class Phase5 extends Visitor {
         return this.outputLocation;
     }
 
+    public OutputSink sink() {
+        return this.sink;
+    }
+
 
     /* The actual print method */
     public void print(GNode ast) {
+        long start = System.nanoTime();
 
         dispatch(ast);
-        printer.flush();
 
         //Add run-time array definition if needed 
         if (null != ast.getProperty("RuntimeInfo")) {
             printer.pln("namespace __rt {");
             printer.pln(ast.getProperty("RuntimeInfo").toString());
-            printer.pln("}").flush();
+            printer.pln("}");
         }
+        emissionNanos += System.nanoTime() - start;
     }
 
     /* The claim placed in the beginning of cpp files */
@@ -105,6 +182,10 @@ public class Phase5 extends Visitor {
      * and vtable initialization.
      */
     public void visitClassDeclaration(GNode n) {
+        if (sharded) {
+            printShard(n);
+            return;
+        }
 
         //Obtaining information of class name of parent class name
         String className = n.get(1).toString();
@@ -120,7 +201,7 @@ public class Phase5 extends Visitor {
 
         //default constructor
         printer.pln((String) n.getProperty("defaultConstructor"));
-        printer.pln().flush();
+        printer.pln();
 
         //real default constructor
         if (n.getProperty("realDefaultConstructor") != null) {
@@ -131,7 +212,6 @@ public class Phase5 extends Visitor {
         GNode node = (GNode) NodeUtil.dfs(n, "MethodDeclaration");
         if (null != node) {
             if(node.getString(3).contains("main")){
-                printer.flush();
                 printmain(node);
             }
         }
@@ -148,21 +228,21 @@ public class Phase5 extends Visitor {
         }
 
         //vtable initialization
-        printer.pln((String) n.getProperty("vtableInit")).flush();
+        printer.pln((String) n.getProperty("vtableInit"));
 
     }
 
     public void visitConditionalStatement(GNode n) {
 
-        printer.p("if (").flush();
+        printer.p("if (");
         GNode condition = (GNode) n.get(0);
         dispatch(condition);
-        printer.p(")").flush();
+        printer.p(")");
 
         for (int i = 1; i < n.size(); i++) {
             if (n.get(0) instanceof Node) dispatch((Node) n.get(i));
             if (n.get(0) instanceof String) {
-                printer.p((String) n.get(i) + " ").flush();
+                printer.p((String) n.get(i)).p(' ');
             }
         }
     }
@@ -180,13 +260,13 @@ public class Phase5 extends Visitor {
         dispatch((Node) n.get(0));
         printer.p("-> __vptr -> getClass(");
         dispatch((Node) n.get(0));
-        printer.p(")").flush();
+        printer.p(")");
         printer.p(", __rt::java_cast<Object>(__");
         dispatch((Node) n.get(1));
         printer.p("::__init(new __");
         dispatch((Node) n.get(1));
         printer.p("()))");
-        printer.p("())").flush();
+        printer.p("())");
 
     }
 
@@ -199,10 +279,12 @@ public class Phase5 extends Visitor {
         //print namespace and generate package info
         GNode p = (GNode) n.getGeneric(0);
         GNode packageName = (GNode) p.getGeneric(1);
+        namespaces.clear();
         for (int i = 0; i < packageName.size(); i ++) {
+            namespaces.add(packageName.get(i).toString());
             packageInfo += packageName.get(i).toString() + ".";
-            printer.pln("namespace " + packageName.get(i).toString()).flush();
-            printer.pln("{").flush();
+            printer.pln("namespace " + packageName.get(i).toString());
+            printer.pln("{");
         }
 
         //visit children(except for the 0-index node -- which is package name)
@@ -213,9 +295,9 @@ public class Phase5 extends Visitor {
 
         //right brackets
         for (int i = 0; i < packageName.size(); i ++) {
-            printer.pln("}").flush();
+            printer.pln("}");
         }
-        printer.pln().flush();
+        printer.pln();
     }
 
     /**
@@ -224,7 +306,7 @@ public class Phase5 extends Visitor {
      */
     public void visitFieldDeclaration(GNode n) {
         visit(n);
-        printer.pln(";").flush();
+        printer.pln(";");
     }
 
     /**
@@ -232,10 +314,10 @@ public class Phase5 extends Visitor {
      * Add brackets "{}" at beginning and ending
      */
     public void visitBlock(GNode n) {
-        printer.pln("{").flush();
+        printer.pln("{");
         visit(n);
-        printer.pln("}").flush();
-        printer.pln().flush();
+        printer.pln("}");
+        printer.pln();
 
     }
 
@@ -246,14 +328,14 @@ public class Phase5 extends Visitor {
      */
     public void visitArguments(GNode n) {
 
-        printer.p("(").flush();
+        printer.p("(");
 
         //add comma
         for (int i = 0; i < n.size() - 1; i++) {
             try {
                 GNode child = (GNode) n.getGeneric(i);
                 dispatch(child);
-                printer.p(", ").flush();
+                printer.p(", ");
             } catch (Exception e) {}
         }
 
@@ -262,11 +344,11 @@ public class Phase5 extends Visitor {
             if (child instanceof GNode) {
                 dispatch((GNode) child);
             } else if (child instanceof String) {
-                printer.p((String) child).flush();
+                printer.p((String) child);
             }
         } catch (Exception e) {}
 
-        printer.p(")").flush();
+        printer.p(")");
     }
 
     /**
@@ -311,7 +393,7 @@ public class Phase5 extends Visitor {
 
         dispatch((GNode) n.getGeneric(1));
 
-        printer.p(") ").flush();
+        printer.p(") ");
     }
 
     /**
@@ -325,18 +407,18 @@ public class Phase5 extends Visitor {
 
             inCout = true;
 
-            printer.p("std::cout ").flush();
+            printer.p("std::cout ");
             GNode arguments = (GNode) n.getGeneric(3);
 
             //print arguments, starts with "<<"
             for (Object o : arguments) {
-                printer.p("<< ").flush();
+                printer.p("<< ");
                 if (o instanceof Node) {
                     GNode gnode = (GNode) o;
                     dispatch((Node) o);
                 }
 
-                if (o instanceof String) printer.p(((String) o) + " ").flush();
+                if (o instanceof String) printer.p((String) o).p(' ');
             }
         }
 
@@ -356,7 +438,7 @@ public class Phase5 extends Visitor {
 
         printer.p("({");
         visit(n);
-        printer.p("})").flush();
+        printer.p("})");
     }
 
     /**
@@ -377,7 +459,7 @@ public class Phase5 extends Visitor {
             dispatch(n.getNode(i));
         }
 
-        printer.pln(");").flush();
+        printer.pln(");");
 
     }
 
@@ -391,7 +473,7 @@ public class Phase5 extends Visitor {
         
         //print current statement
         visit(n);
-        printer.pln(";").flush();
+        printer.pln(";");
 
         Object call = NodeUtil.dfs(n, "CallExpression");
 
@@ -403,7 +485,7 @@ public class Phase5 extends Visitor {
             Object o = nn.getProperty("initStatements");
 
             if (o != null) {
-                printer.p(o.toString()).flush();
+                printer.p(o.toString());
             }
         }
     }
@@ -414,9 +496,9 @@ public class Phase5 extends Visitor {
      * print return, ending with ";"
      */
     public void visitReturnStatement(GNode n) {
-        printer.p("return ").flush();
+        printer.p("return ");
         visit(n);
-        printer.pln(";").flush();
+        printer.pln(";");
     }
 
     /**
@@ -424,7 +506,7 @@ public class Phase5 extends Visitor {
      * print "void"
      */
     public void visitVoidType(GNode n) {
-        printer.p("void ").flush();
+        printer.p("void ");
     }
 
     /**
@@ -432,7 +514,7 @@ public class Phase5 extends Visitor {
      * adding "=" to the statement
      */
     public void visitDeclarator(GNode n) {
-        printer.p(n.get(0).toString()).flush();
+        printer.p(n.get(0).toString());
 
         boolean eq = false;
         for (int i = 1; i < n.size(); i++) {
@@ -441,7 +523,7 @@ public class Phase5 extends Visitor {
 
                 if (child != null) {
                     if (!eq) {
-                        printer.p(" = ").flush();
+                        printer.p(" = ");
                         eq = true;
                     }
                     dispatch(child);
@@ -451,10 +533,10 @@ public class Phase5 extends Visitor {
             if (n.get(i) instanceof String) {
 
                 if (!eq) {
-                    printer.p("= ").flush();
+                    printer.p("= ");
                     eq = true;
                 }
-                printer.p((String) n.get(i)).flush();
+                printer.p((String) n.get(i));
             }
         }
 
@@ -465,7 +547,7 @@ public class Phase5 extends Visitor {
      * print while
      */
     public void visitWhileStatement(GNode n) {
-        printer.p("while ").flush();
+        printer.p("while ");
         visit(n);
     }
 
@@ -474,9 +556,9 @@ public class Phase5 extends Visitor {
      * print () to contain its content
      */
     public void visitRelationalExpression(GNode n) {
-        printer.p("(").flush();
+        printer.p("(");
         visit(n);
-        printer.p(")").flush();
+        printer.p(")");
     }
 
     /**
@@ -485,9 +567,9 @@ public class Phase5 extends Visitor {
      */
     public void visitStringLiteral(GNode n) {
 
-        printer.p("__rt::literal(").flush();
+        printer.p("__rt::literal(");
         visit(n);
-        printer.p(")").flush();
+        printer.p(")");
 
     }
 
@@ -496,14 +578,14 @@ public class Phase5 extends Visitor {
      * print for and its following conditions in c++ style
      */
     public void visitForStatement(GNode n) {
-        printer.p("for (").flush();
+        printer.p("for (");
         dispatch(n.getNode(0).getNode(1));
         dispatch(n.getNode(0).getNode(2));
-        printer.p("; ").flush();
+        printer.p("; ");
         visit(n.getNode(0).getNode(3));
-        printer.p("; ").flush();
+        printer.p("; ");
         dispatch(n.getNode(0).getNode(4));
-        printer.pln(")").flush();
+        printer.pln(")");
         dispatch(n.getNode(1));
     }
 
@@ -525,7 +607,7 @@ public class Phase5 extends Visitor {
                 dispatch(n.getNode(0));
             }
             else if (n.get(0) instanceof String) {
-                printer.p(((String) n.get(0)) + " ");
+                printer.p((String) n.get(0)).p(' ');
             }
             
             printer.p(",");
@@ -534,7 +616,7 @@ public class Phase5 extends Visitor {
                 dispatch(n.getNode(1));
             }
             else if (n.get(1) instanceof String) {
-                printer.p(((String) n.get(1)) + " ");
+                printer.p((String) n.get(1)).p(' ');
             }
 
             printer.p(");\n");
@@ -545,20 +627,20 @@ public class Phase5 extends Visitor {
             dispatch(n.getNode(0));
         }
         else if (n.get(0) instanceof String) {
-            printer.p(((String) n.get(0)) + " ");
+            printer.p((String) n.get(0)).p(' ');
         }
 
         //print index
-        printer.p("-> __data[").flush();
+        printer.p("-> __data[");
 
         if (n.get(1) instanceof Node) {
             dispatch(n.getNode(1));
         }
         else if (n.get(1) instanceof String) {
-            printer.p(((String) n.get(1)) + " ");
+            printer.p((String) n.get(1)).p(' ');
         }
 
-        printer.p("]").flush();
+        printer.p("]");
 
         //access check if needed
         if (null != n.getProperty("AccessCheck")) {
@@ -602,7 +684,7 @@ public class Phase5 extends Visitor {
             printer.p("({" + n.getProperty("ArrayType") + " tmp = " );
             visit(n);
             printer.p(";\n" + n.getProperty("InitSubArray"));
-            printer.pln("tmp;})").flush();
+            printer.pln("tmp;})");
         }
 
         //1D array 
@@ -616,19 +698,43 @@ public class Phase5 extends Visitor {
      * print __rt::null()
      */
     public void visitNullLiteral(GNode n) {
-        printer.p("__rt::null() ").flush();
+        printer.p("__rt::null() ");
+    }
+
+    //Prints a class into its own source file, within the namespaces of its package
+    private void printShard(GNode n) {
+        String name = "";
+        for (String namespace : namespaces) name += namespace + ".";
+        name += n.get(1).toString() + ".cpp";
+        shards.add(name);
+
+        Phase5 shard = new Phase5(sink, name);
+        shard.packageInfo = packageInfo;
+        shard.headOfFile();
+        for (String namespace : namespaces) {
+            shard.printer().pln("namespace " + namespace);
+            shard.printer().pln("{");
+        }
+        shard.visitClassDeclaration(n);
+        for (int i = 0; i < namespaces.size(); i ++) {
+            shard.printer().pln("}");
+        }
+        shardsWritten |= shard.close();
+        for (String file : shard.files()) {
+            if (!files.contains(file)) files.add(file);
+        }
     }
 
     //Prints main implementation seperately to main.cpp
     public void printmain(GNode n){
-        Phase5 mainPrint = new Phase5("main.cpp");
+        Phase5 mainPrint = new Phase5(sink, "main.cpp");
         Printer mainPrinter = mainPrint.printer();
         mainPrinter.register(mainPrint);
-        mainPrinter.pln("#include \"java_lang.h\"").flush();
+        mainPrinter.pln("#include \"java_lang.h\"");
         mainPrint.headOfFile();
         mainPrinter.pln("using namespace std;");
         mainPrinter.pln("using namespace " +
-        packageInfo.substring(0, packageInfo.length() - 1).replace(".", "::") + ";").pln().flush();
+        packageInfo.substring(0, packageInfo.length() - 1).replace(".", "::") + ";").pln();
         String info = packageInfo.substring(0, packageInfo.length() - 1).replace(".", "::");
         String info2 = info.split("::")[1];
         mainPrinter.pln("int main(int argc, char* argv[]) {");
@@ -643,7 +749,8 @@ public class Phase5 extends Visitor {
         mainPrinter.pln();
         mainPrinter.pln("  return 0;");
         mainPrinter.pln("}");
-        mainPrinter.flush();
+        mainPrint.close();
+        if (!files.contains("main.cpp")) files.add("main.cpp");
     }
 
 
@@ -661,7 +768,7 @@ public class Phase5 extends Visitor {
             if (o instanceof String) {
                 String s = (String) o;
 
-                printer.p(s + " ").flush();
+                printer.p(s).p(' ');
             }
         }
     }
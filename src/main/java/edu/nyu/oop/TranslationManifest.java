@@ -0,0 +1,335 @@
+/**
+ * Dependency manifest of a translation, written next to the generated C++ so a rerun can tell
+ * which classes actually changed
+ * for every class it records the hash of the Java file declaring it, its ancestors from
+ * childrenToParents and a signature of its data layout and vtable as built by Phase 2
+ * together with a stamp of the translator itself, a hash of its class files, so a translator
+ * whose code changed invalidates every entry, touching or checking it out again does not
+ * output.h is printed from the layouts alone, it only needs to be regenerated when a layout
+ * changed, the implementation files need to be regenerated when any class changed
+ * it also records the headers and implementation files written, so a rerun can regenerate
+ * any of them that went missing
+ *
+ * @version 1.0
+ */
+
+package edu.nyu.oop;
+
+import edu.nyu.oop.util.AstCache;
+import edu.nyu.oop.util.OutputSink;
+
+import xtc.tree.GNode;
+import xtc.tree.Node;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class TranslationManifest {
+
+    public static final String FILE_NAME = "translation.manifest";
+
+    // the translator stamp covers the classes under this path
+    private static final String CLASSES = "edu/nyu/oop/";
+
+    private String translator = "";
+
+    // class name to its entry, sorted so the manifest file is stable
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+    // files written by Phase 3 and by Phase 5, in the order they were printed
+    private List<String> headers = new ArrayList<String>();
+    private List<String> sources = new ArrayList<String>();
+
+    static class Entry {
+        final String sourceHash;
+        final String layout;
+        final String ancestors;
+
+        Entry(String sourceHash, String layout, String ancestors) {
+            this.sourceHash = sourceHash;
+            this.layout = layout;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry other = (Entry) o;
+            return sourceHash.equals(other.sourceHash) && layout.equals(other.layout) && ancestors.equals(other.ancestors);
+        }
+
+        @Override
+        public int hashCode() {
+            return sourceHash.hashCode() * 31 + layout.hashCode();
+        }
+    }
+
+    /**
+     * Builds the manifest of a session, runs Phase 1 and Phase 2 if they have not run yet
+     *
+     * @param session translation session
+     * @return manifest of every class in the session
+     */
+    public static TranslationManifest build(TranslationSession session) {
+        TranslationManifest manifest = new TranslationManifest();
+        // output of the other mode cannot be reused, so switching modes changes every class
+        manifest.translator = Stamp.TRANSLATOR + (session.isSharded() ? "-sharded" : "");
+
+        List<GNode> javaAsts = session.getJavaAsts();
+        List<Node> cppAsts = session.getCppAsts();
+        HashMap<String, String> childrenToParents = session.getChildrenToParents();
+
+        for (int i = 0; i < cppAsts.size(); i++) {
+            String sourceHash = sourceHash(javaAsts.get(i));
+
+            for (Object o : cppAsts.get(i)) {
+                if (!(o instanceof Node) || !((Node) o).hasName("ClassDeclaration")) continue;
+                Node classNode = (Node) o;
+                String name = classNode.getString(0).substring(2);
+
+                // a class is recorded for the file that declares it, not for files that only see it
+                if (manifest.entries.containsKey(name)) continue;
+
+                String layout = AstCache.key(classNode.toString().getBytes());
+                manifest.entries.put(name, new Entry(sourceHash, layout, ancestors(name, childrenToParents)));
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Loads the manifest of a previous translation
+     *
+     * @param sink sink of the previous translation
+     * @return previous manifest, empty if there is none or it cannot be read
+     */
+    public static TranslationManifest load(OutputSink sink) {
+        TranslationManifest manifest = new TranslationManifest();
+
+        try {
+            byte[] contents = sink.read(FILE_NAME);
+            if (contents == null) return manifest;
+
+            BufferedReader in = new BufferedReader(new StringReader(new String(contents, StandardCharsets.UTF_8)));
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts[0].equals("translator") && parts.length == 2) {
+                    manifest.translator = parts[1];
+                } else if (parts[0].equals("class") && parts.length == 5) {
+                    manifest.entries.put(parts[1], new Entry(parts[2], parts[3], parts[4]));
+                } else if (parts[0].equals("header") && parts.length == 2) {
+                    manifest.headers.add(parts[1]);
+                } else if (parts[0].equals("source") && parts.length == 2) {
+                    manifest.sources.add(parts[1]);
+                }
+            }
+        } catch (IOException e) {
+            return new TranslationManifest();
+        }
+        return manifest;
+    }
+
+    public void save(OutputSink sink) {
+        StringBuilder out = new StringBuilder();
+        out.append("translator ").append(translator).append('\n');
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            out.append("class ").append(e.getKey()).append(' ').append(entry.sourceHash).append(' ')
+            .append(entry.layout).append(' ').append(entry.ancestors).append('\n');
+        }
+        for (String name : headers) out.append("header ").append(name).append('\n');
+        for (String name : sources) out.append("source ").append(name).append('\n');
+        try {
+            sink.write(FILE_NAME, out.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write " + FILE_NAME + " to " + sink, e);
+        }
+    }
+
+    /**
+     * Gets the classes whose source, ancestors or layout differ from a previous manifest,
+     * including classes that were added or removed
+     *
+     * @param previous manifest of the previous translation
+     * @return names of the changed classes, every class if the translator changed
+     */
+    public Set<String> changedClasses(TranslationManifest previous) {
+        Set<String> changed = new HashSet<String>();
+        boolean sameTranslator = translator.equals(previous.translator);
+
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (!sameTranslator || !e.getValue().equals(previous.entries.get(e.getKey()))) changed.add(e.getKey());
+        }
+        for (String name : previous.entries.keySet()) {
+            if (!entries.containsKey(name)) changed.add(name);
+        }
+        return changed;
+    }
+
+    /**
+     * Checks whether any data layout or vtable differs from a previous manifest
+     *
+     * @param previous manifest of the previous translation
+     * @return true if output.h has to be regenerated
+     */
+    public boolean layoutsChanged(TranslationManifest previous) {
+        if (!translator.equals(previous.translator) || !entries.keySet().equals(previous.entries.keySet())) return true;
+
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (!e.getValue().layout.equals(previous.entries.get(e.getKey()).layout)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return names of the headers the translation wrote
+     */
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(List<String> headers) {
+        this.headers = new ArrayList<String>(headers);
+    }
+
+    /**
+     * @return names of the implementation files and the Makefile the translation wrote
+     */
+    public List<String> getSources() {
+        return sources;
+    }
+
+    public void setSources(List<String> sources) {
+        this.sources = new ArrayList<String>(sources);
+    }
+
+    private static String sourceHash(GNode javaAst) {
+        try {
+            return AstCache.key(Files.readAllBytes(new File(javaAst.getLocation().file).toPath()));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read " + javaAst.getLocation().file, e);
+        }
+    }
+
+    // ancestors from the direct parent up, "-" for classes directly under Object
+    private static String ancestors(String name, HashMap<String, String> childrenToParents) {
+        List<String> chain = new ArrayList<String>();
+        String parent = childrenToParents.get(name);
+        while (parent != null && !parent.equals("") && !chain.contains(parent)) {
+            chain.add(parent);
+            parent = childrenToParents.get(parent);
+        }
+        if (chain.isEmpty()) return "-";
+
+        StringBuilder s = new StringBuilder();
+        for (String ancestor : chain) {
+            if (s.length() > 0) s.append(',');
+            s.append(ancestor);
+        }
+        return s.toString();
+    }
+
+    // the classes cannot change under a running JVM, so they are hashed once, when the first manifest is built
+    private static class Stamp {
+        static final String TRANSLATOR = translatorStamp();
+    }
+
+    // hash of the class files the translator is running from, a rebuild or checkout that gives the same classes keeps it
+    private static String translatorStamp() {
+        try {
+            CodeSource source = TranslationManifest.class.getProtectionDomain().getCodeSource();
+            if (source == null) return "unknown";
+            return translatorStamp(new File(source.getLocation().toURI()));
+        } catch (URISyntaxException e) {
+            return "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Hashes the translator classes in a jar or a class directory, every file under edu/nyu/oop
+     * goes in by its path and contents, sorted by path, sizes and modification times are left out
+     *
+     * @param location jar or directory the classes are loaded from
+     * @return SHA-256 of the classes, in hex
+     * @throws IOException if a class file cannot be read
+     */
+    static String translatorStamp(File location) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available.", e);
+        }
+
+        if (location.isFile()) {
+            try (ZipFile jar = new ZipFile(location)) {
+                List<String> names = new ArrayList<String>();
+                for (Enumeration<? extends ZipEntry> e = jar.entries(); e.hasMoreElements();) {
+                    ZipEntry entry = e.nextElement();
+                    if (!entry.isDirectory() && entry.getName().startsWith(CLASSES)) names.add(entry.getName());
+                }
+                Collections.sort(names);
+                for (String name : names) {
+                    try (InputStream in = jar.getInputStream(jar.getEntry(name))) {
+                        stamp(digest, name, in);
+                    }
+                }
+            }
+        } else {
+            stamp(digest, new File(location, CLASSES), CLASSES);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    private static void stamp(MessageDigest digest, File directory, String path) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files);
+
+        for (File f : files) {
+            if (f.isDirectory()) {
+                stamp(digest, f, path + f.getName() + "/");
+            } else {
+                try (InputStream in = new FileInputStream(f)) {
+                    stamp(digest, path + f.getName(), in);
+                }
+            }
+        }
+    }
+
+    private static void stamp(MessageDigest digest, String name, InputStream in) throws IOException {
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) digest.update(buffer, 0, read);
+    }
+}
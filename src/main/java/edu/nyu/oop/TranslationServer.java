@@ -0,0 +1,82 @@
+/**
+ * Long running translator, started with Boot -server
+ * reads one Boot command line per line of standard input, for example
+ * "-translate src/test/java/inputs/test000/Test000.java", and runs it in this JVM, so the
+ * JVM start up and the loading of xtc are paid once instead of once per translation
+ * after the output of a command it prints a status line "#done ok <ms>" or "#done error <ms>"
+ * so a client knows the command finished, an empty line is ignored and "quit" or the end of
+ * the input stops the server
+ * parsed ASTs are kept in memory between commands, up to server.ast.memory of them, and the
+ * hard coded Object, String and Class reps of Phase 2 are built once, symbol tables are rebuilt
+ * for every command since mangling and Phase 4 rewrite the ASTs they belong to
+ *
+ * @version 1.0
+ */
+
+package edu.nyu.oop;
+
+import edu.nyu.oop.util.AstCache;
+import edu.nyu.oop.util.XtcProps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+
+public class TranslationServer {
+
+    public static final String DONE = "#done";
+
+    private final BufferedReader in;
+    private final PrintStream out;
+
+    public TranslationServer(InputStream in, PrintStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in));
+        this.out = out;
+    }
+
+    /**
+     * Serves commands until quit or the end of the input
+     */
+    public void serve() {
+        AstCache.getDefault().retainInMemory(XtcProps.getInt("server.ast.memory", 1024));
+
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (line.equals("quit")) break;
+
+                long start = System.currentTimeMillis();
+                boolean ok = run(line.split("\\s+"));
+                out.println(DONE + (ok ? " ok " : " error ") + (System.currentTimeMillis() - start));
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read commands.", e);
+        }
+    }
+
+    /**
+     * Runs one command line with a fresh Boot, which never exits the JVM
+     *
+     * @param args command line arguments of Boot
+     * @return true if the command ran without errors
+     */
+    public boolean run(String[] args) {
+        String[] noExit = new String[args.length + 1];
+        noExit[0] = "-no-exit";
+        System.arraycopy(args, 0, noExit, 1, args.length);
+
+        Boot boot = new Boot();
+        try {
+            boot.run(noExit);
+            return !boot.failed();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ * Translation session that owns every artifact produced during a single
+ * translation run: the Java ASTs of the primary source and its dependencies,
+ * their symbol tables, the initializer map from mangling, the C++ ASTs of
+ * Phase 2 and the lowered ASTs of Phase 4
+ * the symbol table of an AST is built once and used by Phase 1, Phase 4 and
+ * the printers alike
+ * each artifact is computed lazily the first time it is requested and then
+ * handed out to every phase that asks for it, so the dependency closure is
+ * parsed and mangled once no matter how many outputs are requested
+ * phases run in pipeline order, asking for the output of a later phase
+ * runs the earlier phases first
+ * unless dead.code.elimination is off, classes and methods main cannot reach are removed from
+ * the mangled ASTs before Phase 2 and Phase 4 see them, see DeadCodeEliminator
+ * output is byte for byte the same on every run and machine, files are translated in a fixed
+ * order, the primary source first, then its dependencies in the order they are imported, the
+ * files of a package sorted by name, within a file classes come in inheritance order, every
+ * class after its parent and otherwise in declaration order, the maps a session shares keep
+ * their entries in that order too
+ * that holds for translation.manifest as well, it stamps the translator by a hash of its
+ * classes, not by where or when they were built
+ *
+ * @version 1.0
+ */
+
+package edu.nyu.oop;
+
+import edu.nyu.oop.util.DirectorySink;
+import edu.nyu.oop.util.OutputSink;
+import edu.nyu.oop.util.Profiler;
+import edu.nyu.oop.util.XtcProps;
+
+import xtc.tree.GNode;
+import xtc.tree.Node;
+import xtc.util.Runtime;
+import xtc.util.SymbolTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+public class TranslationSession {
+
+    private final Runtime runtime;
+    private final Node primarySource;
+
+    // phase 1
+    private List<GNode> javaAsts;
+    private List<SymbolTable> tables;
+    private HashMap<String, ArrayList<Phase1.Initializer>> inits;
+    // true once dead code has been removed from the mangled ASTs
+    private boolean live;
+
+    // phase 2
+    private List<Node> cppAsts;
+    private HashMap<String, String> childrenToParents;
+
+    // phase 4
+    private List<GNode> loweredAsts;
+
+    // one header and source file per class and a Makefile instead of output.h and output.cpp
+    private boolean sharded = Boolean.parseBoolean(XtcProps.get("output.sharded", "false"));
+
+    public TranslationSession(Runtime runtime, Node primarySource) {
+        this.runtime = runtime;
+        this.primarySource = primarySource;
+    }
+
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /**
+     * @param sharded true to translate into one header and source file per class and a Makefile
+     */
+    public void setSharded(boolean sharded) {
+        this.sharded = sharded;
+    }
+
+    /**
+     * Parses the primary source and all of its dependencies, only once per session
+     *
+     * @return list of Java ASTs, primary source first
+     */
+    public List<GNode> getJavaAsts() {
+        if (javaAsts == null) javaAsts = Phase1.parse(primarySource);
+        return javaAsts;
+    }
+
+    /**
+     * Builds the symbol table of every Java AST, only once per session
+     * every phase and printer of the session uses these tables, none builds its own
+     *
+     * @return list of symbol tables, in the same order as the ASTs
+     */
+    public List<SymbolTable> getTables() {
+        if (tables == null) tables = Phase1.buildTables(runtime, getJavaAsts());
+        return tables;
+    }
+
+    /**
+     * Mangles every Java AST with its symbol table, only once per session
+     * dead code is removed from the same ASTs in place when getLiveAsts is first called, asked
+     * before that these are the ASTs with every class and method of the source
+     *
+     * @return list of mangled Java ASTs
+     */
+    public List<GNode> getMangledAsts() {
+        if (inits == null) {
+            List<GNode> asts = getJavaAsts();
+            inits = new LinkedHashMap<String, ArrayList<Phase1.Initializer>>();
+
+            // all ASTs are mangled together, so calls find methods declared in any file
+            // Phase 1 samples each file itself
+            inits.putAll(Phase1.mangle(runtime, getTables(), asts));
+        }
+        return javaAsts;
+    }
+
+    /**
+     * Removes what main cannot reach from the mangled ASTs, only once per session
+     * Phase 2 and Phase 4 work on these ASTs
+     *
+     * @return list of mangled Java ASTs without dead code, the same list getMangledAsts returns
+     */
+    public List<GNode> getLiveAsts() {
+        List<GNode> asts = getMangledAsts();
+        if (!live) {
+            live = true;
+            // drop what main cannot reach before any layout or code is built for it
+            if (Boolean.parseBoolean(XtcProps.get("dead.code.elimination", "true"))) {
+                Profiler.Sample sample = Profiler.start("DeadCodeEliminator", fileOf(asts.get(0)));
+                DeadCodeEliminator.run(asts);
+                sample.stop();
+            }
+        }
+        return asts;
+    }
+
+    /**
+     * Gets the field initializers collected while mangling
+     *
+     * @return map of class name to its initializers
+     */
+    public HashMap<String, ArrayList<Phase1.Initializer>> getInitializers() {
+        getMangledAsts();
+        return inits;
+    }
+
+    /**
+     * Runs Phase 2 over every mangled AST, only once per session
+     *
+     * @return list of C++ ASTs for the Phase 3 printer
+     */
+    public List<Node> getCppAsts() {
+        if (cppAsts == null) {
+            cppAsts = new ArrayList<Node>();
+            childrenToParents = new LinkedHashMap<String, String>();
+
+            for (GNode javaAst : getLiveAsts()) {
+                Profiler.Sample sample = Profiler.start("Phase2.runPhase2", fileOf(javaAst));
+                Phase2.Result result = Phase2.runPhase2(javaAst);
+                sample.stop();
+                cppAsts.add(result.getCppAst());
+                childrenToParents.putAll(result.getChildrenToParents());
+            }
+        }
+        return cppAsts;
+    }
+
+    /**
+     * Gets the inheritance map of all classes processed by Phase 2
+     *
+     * @return map of child class name to parent class name
+     */
+    public HashMap<String, String> getChildrenToParents() {
+        getCppAsts();
+        return childrenToParents;
+    }
+
+    /**
+     * Runs Phase 4 over every mangled AST, only once per session, on phase4.threads threads
+     * Phase 4 mutates the Java ASTs in place, so Phase 2 is run before it
+     *
+     * @return list of C++ style ASTs for the Phase 5 printer
+     */
+    public List<GNode> getLoweredAsts() {
+        if (loweredAsts == null) {
+            // the initializers of all classes are resolved before any AST is lowered
+            Phase4 phase4 = new Phase4(runtime, getChildrenToParents(), getInitializers());
+            loweredAsts = new ArrayList<GNode>();
+
+            for (Node lowered : phase4.runNodes(getLiveAsts(), getTables())) loweredAsts.add((GNode) lowered);
+        }
+        return loweredAsts;
+    }
+
+    /**
+     * Translates the session into output.h, output.cpp and main.cpp in a directory
+     *
+     * @param outputLocation output directory, ending with a slash
+     * @return names of the classes that changed since the previous translation
+     */
+    public Set<String> translate(String outputLocation) {
+        return translate(new DirectorySink(new File(outputLocation)));
+    }
+
+    /**
+     * Translates the session into output.h, output.cpp and main.cpp
+     * the manifest of the previous translation into the same sink tells which classes
+     * changed, output.h is only printed if a layout changed and the implementation files only
+     * if any class changed, files whose contents stay the same are not touched
+     * in sharded mode the Makefile is written with the implementation files
+     * a file the previous manifest recorded that is missing from the sink is printed again
+     *
+     * @param sink sink the files and the manifest are written to
+     * @return names of the classes that changed since the previous translation
+     */
+    public Set<String> translate(OutputSink sink) {
+        // phase 1 and 2
+        // process all dependencies, name mangling for method overloading, build data layouts and vtables
+        TranslationManifest previous = TranslationManifest.load(sink);
+        TranslationManifest current = TranslationManifest.build(this);
+        Set<String> changed = current.changedClasses(previous);
+
+        // phase 3
+        if (current.layoutsChanged(previous) || !allExist(sink, previous.getHeaders())) {
+            Phase3 phase3 = new Phase3(sink, sharded);
+            List<Node> cppAsts = getCppAsts();
+            for (int i = 0; i < cppAsts.size(); i++) {
+                Profiler.Sample sample = Profiler.start("Phase3.print", fileOf(javaAsts.get(i)));
+                phase3.print((GNode) cppAsts.get(i));
+                sample.stop();
+            }
+            phase3.close();
+            current.setHeaders(phase3.files());
+        } else {
+            current.setHeaders(previous.getHeaders());
+        }
+
+        // phase 4 and 5
+        if (!changed.isEmpty() || !allExist(sink, previous.getSources())) {
+            Phase5 printer = new Phase5(sink, "output.cpp", sharded);
+            List<GNode> loweredAsts = getLoweredAsts();
+            for (int i = 0; i < loweredAsts.size(); i++) {
+                Profiler.Sample sample = Profiler.start("Phase5.print", fileOf(javaAsts.get(i)));
+                printer.headOfFile();
+                printer.print(loweredAsts.get(i));
+                sample.stop();
+            }
+            printer.close();
+            List<String> sources = new ArrayList<String>(printer.files());
+            if (sharded) {
+                Makefile.write(sink, printer.shards());
+                sources.add(Makefile.FILE_NAME);
+            }
+            current.setSources(sources);
+        } else {
+            current.setSources(previous.getSources());
+        }
+
+        // a sink that cannot read the manifest back would only carry it along
+        if (sink.isReadable()) current.save(sink);
+        return changed;
+    }
+
+    // false if nothing was recorded, as after a first translation or a lost manifest
+    private static boolean allExist(OutputSink sink, List<String> names) {
+        if (names.isEmpty()) return false;
+        try {
+            for (String name : names) {
+                if (sink.read(name) == null) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // file an AST was parsed from, for profiling
+    private static String fileOf(GNode ast) {
+        return ast.getLocation() == null ? "" : ast.getLocation().file;
+    }
+}
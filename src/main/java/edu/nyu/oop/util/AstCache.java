@@ -0,0 +1,277 @@
+package edu.nyu.oop.util;
+
+import org.slf4j.Logger;
+import xtc.Constants;
+import xtc.tree.GNode;
+import xtc.tree.Location;
+import xtc.tree.Node;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of parsed Java ASTs
+ * an entry is keyed by the SHA-256 of the source bytes together with the parser version, so an
+ * edited file or an upgraded xtc jar simply misses and gets parsed again
+ * GNode is not Serializable, entries are written in a small binary format of their own:
+ * node name, line and column of the location, a fixed/variable flag and the children, which are
+ * either null, a String or another node
+ * the file name of a location is not stored, it is restored from the file being parsed, so the
+ * same source under two paths shares one entry
+ * a long running process can also keep entries in memory, callers mutate the ASTs they get, so
+ * the memory layer keeps a pristine copy and hands out copies of it
+ *
+ * @version 1.0
+ */
+public class AstCache {
+    private static Logger logger = org.slf4j.LoggerFactory.getLogger(AstCache.class);
+
+    // bump whenever the entry layout below changes
+    private static final String FORMAT = "1";
+    private static final String PARSER_VERSION = "xtc-" + Constants.VERSION + "/JavaFiveParser/" + FORMAT;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte NODE = 2;
+
+    private static AstCache instance;
+
+    private final File directory;
+
+    // pristine ASTs by key, least recently used first, null unless retainInMemory was called
+    private Map<String, Node> memory;
+
+    public AstCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Keeps up to capacity ASTs in memory, so repeated parses of the same source skip the disk too
+     *
+     * @param capacity maximum number of ASTs kept
+     */
+    public synchronized void retainInMemory(final int capacity) {
+        memory = new LinkedHashMap<String, Node>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the cache configured by ast.cache.location in xtc.properties
+     * an empty location disables the on-disk cache
+     *
+     * @return the shared cache
+     */
+    public static synchronized AstCache getDefault() {
+        if (instance == null) {
+            String location = XtcProps.get("ast.cache.location", "").trim();
+            instance = new AstCache(location.isEmpty() ? null : new File(System.getProperty("user.dir"), location));
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Computes the key of a source file, the hex SHA-256 of the parser version and the source bytes
+     *
+     * @param source contents of the source file
+     * @return cache key
+     */
+    public static String key(byte[] source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(PARSER_VERSION.getBytes("UTF-8"));
+            digest.update(source);
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available.", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("UTF-8 is not available.", e);
+        }
+    }
+
+    /**
+     * Loads the AST of a source file if it was cached by a previous run
+     *
+     * @param source contents of the source file
+     * @param fileName file name given to the locations of the AST
+     * @return cached AST, null on a miss or when the entry cannot be read
+     */
+    public Node load(byte[] source, String fileName) {
+        String key = key(source);
+
+        Node pristine = fromMemory(key);
+        if (pristine != null) return copy(pristine, fileName);
+        if (!isEnabled()) return null;
+
+        File entry = new File(directory, key);
+        if (!entry.isFile()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)))) {
+            Node ast = readNode(in, fileName);
+            toMemory(key, ast);
+            return ast;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable AST cache entry " + entry + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the AST of a source file
+     * the entry is written to a temporary file and renamed into place, so concurrent parses of
+     * the same file never observe a partial entry
+     *
+     * @param source contents of the source file
+     * @param ast AST parsed from source
+     */
+    public void store(byte[] source, Node ast) {
+        String key = key(source);
+        toMemory(key, ast);
+        if (!isEnabled()) return;
+
+        File tmp = null;
+        try {
+            directory.mkdirs();
+            File entry = new File(directory, key);
+            tmp = File.createTempFile(entry.getName(), ".tmp", directory);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                writeNode(out, ast);
+            }
+            Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to cache AST of " + ast.getLocation() + ": " + e);
+            if (tmp != null) tmp.delete();
+        }
+    }
+
+    private synchronized Node fromMemory(String key) {
+        return memory == null ? null : memory.get(key);
+    }
+
+    private void toMemory(String key, Node ast) {
+        synchronized (this) {
+            if (memory == null) return;
+        }
+        Node pristine = copy(ast, ast.getLocation() == null ? null : ast.getLocation().file);
+        synchronized (this) {
+            memory.put(key, pristine);
+        }
+    }
+
+    // deep copy keeping fixed and variable nodes apart, locations get the given file name
+    private static Node copy(Node node, String fileName) {
+        List<Object> children = new ArrayList<Object>(node.size());
+        for (Object child : node) {
+            children.add(child instanceof Node ? copy((Node) child, fileName) : child);
+        }
+
+        GNode copy = create(node.getName(), node.hasVariable(), children);
+        Location location = node.getLocation();
+        if (location != null) copy.setLocation(new Location(fileName, location.line, location.column));
+        return copy;
+    }
+
+    private static void writeNode(DataOutputStream out, Node node) throws IOException {
+        out.writeUTF(node.getName());
+        out.writeBoolean(node.hasVariable());
+
+        Location location = node.getLocation();
+        out.writeInt(location == null ? -1 : location.line);
+        out.writeInt(location == null ? -1 : location.column);
+
+        out.writeInt(node.size());
+        for (Object child : node) {
+            if (child == null) {
+                out.writeByte(NULL);
+            } else if (child instanceof String) {
+                out.writeByte(STRING);
+                out.writeUTF((String) child);
+            } else if (child instanceof GNode) {
+                out.writeByte(NODE);
+                writeNode(out, (Node) child);
+            } else {
+                throw new IllegalArgumentException("Unsupported child " + child.getClass().getName());
+            }
+        }
+    }
+
+    private static Node readNode(DataInputStream in, String fileName) throws IOException {
+        String name = in.readUTF();
+        boolean variable = in.readBoolean();
+        int line = in.readInt();
+        int column = in.readInt();
+
+        int size = in.readInt();
+        List<Object> children = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+            byte tag = in.readByte();
+            switch (tag) {
+            case NULL:
+                children.add(null);
+                break;
+            case STRING:
+                children.add(in.readUTF());
+                break;
+            case NODE:
+                children.add(readNode(in, fileName));
+                break;
+            default:
+                throw new IOException("Corrupt AST cache entry, unknown tag " + tag);
+            }
+        }
+
+        GNode node = create(name, variable, children);
+        if (line >= 0) node.setLocation(new Location(fileName, line, column));
+        return node;
+    }
+
+    // the parser creates fixed size nodes for productions with a known number of children
+    private static GNode create(String name, boolean variable, List<Object> c) {
+        if (variable) {
+            GNode node = GNode.create(name, c.size());
+            node.addAll(c);
+            return node;
+        }
+
+        switch (c.size()) {
+        case 0:
+            return GNode.create(name, false);
+        case 1:
+            return GNode.create(name, c.get(0));
+        case 2:
+            return GNode.create(name, c.get(0), c.get(1));
+        case 3:
+            return GNode.create(name, c.get(0), c.get(1), c.get(2));
+        case 4:
+            return GNode.create(name, c.get(0), c.get(1), c.get(2), c.get(3));
+        case 5:
+            return GNode.create(name, c.get(0), c.get(1), c.get(2), c.get(3), c.get(4));
+        case 6:
+            return GNode.create(name, c.get(0), c.get(1), c.get(2), c.get(3), c.get(4), c.get(5));
+        case 7:
+            return GNode.create(name, c.get(0), c.get(1), c.get(2), c.get(3), c.get(4), c.get(5), c.get(6));
+        case 8:
+            return GNode.create(name, c.get(0), c.get(1), c.get(2), c.get(3), c.get(4), c.get(5), c.get(6), c.get(7));
+        default:
+            throw new IllegalArgumentException("Fixed node " + name + " with " + c.size() + " children");
+        }
+    }
+}
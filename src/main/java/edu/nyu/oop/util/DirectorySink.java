@@ -0,0 +1,59 @@
+package edu.nyu.oop.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Output sink that writes the generated files into a directory
+ * a file whose contents did not change is left alone, timestamp included, so make style builds
+ * of the generated C++ do not recompile it
+ *
+ * @version 1.0
+ */
+public class DirectorySink implements OutputSink {
+
+    private final File directory;
+
+    /**
+     * @param directory existing directory the files are written into
+     */
+    public DirectorySink(File directory) {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Output location not found. Create the " + directory + " directory.");
+        }
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public boolean write(String name, byte[] contents) throws IOException {
+        File file = new File(directory, name);
+        if (file.isFile() && file.length() == contents.length
+                && Arrays.equals(Files.readAllBytes(file.toPath()), contents)) {
+            return false;
+        }
+        Files.write(file.toPath(), contents);
+        return true;
+    }
+
+    @Override
+    public byte[] read(String name) throws IOException {
+        File file = new File(directory, name);
+        return file.isFile() ? Files.readAllBytes(file.toPath()) : null;
+    }
+
+    @Override
+    public boolean isReadable() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
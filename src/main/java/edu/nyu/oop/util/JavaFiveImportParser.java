@@ -7,128 +7,178 @@ import xtc.tree.GNode;
 import xtc.tree.Visitor;
 
 import java.io.*;
-import java.util.Set;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This is a utility class which will load the source files for anything referenced by the primary source.
+ * Files of wildcard imports and of the package of the primary source that it never references are skipped.
  * Note that it does *not* do this recursively. In other words, it will not return nodes representing the
  * dependencies of the dependencies. You can obviously do that yourself using this class if necessary.
  * <p>
- * It will look for the files in the locations specified in xtc.properties's input.locations property.
+ * It will look for the files in the locations specified in xtc.properties's input.locations property,
+ * through the SourceIndex of those locations.
  * If you have two packages named the same thing under more than one input location, it will return
  * which ever one it finds first.
  */
 public class JavaFiveImportParser {
     private static Logger logger = org.slf4j.LoggerFactory.getLogger(JavaFiveImportParser.class);
 
-    private static List<String> inputLocations = loadInputLocations();
-
     public static List<GNode> parse(final GNode primarySrc) {
         final List<GNode> importedSources = new LinkedList<GNode>();
+        for (File f : resolve(primarySrc)) importedSources.add((GNode) NodeUtil.parseJavaFile(f));
+        return importedSources;
+    }
+
+    /**
+     * Finds the source files for everything referenced by the primary source without parsing them,
+     * in the same order parse(GNode) returns their nodes. The primary source itself is never included.
+     * Single type imports are always included, files of the own package and of wildcard imports only
+     * if the primary source references a class of the same name, or, for a class the file names do
+     * not account for, if the file declares it.
+     */
+    public static List<File> resolve(final GNode primarySrc) {
+        final Path primaryPath = Paths.get(primarySrc.getLocation().file).toAbsolutePath().normalize();
+        final SourceIndex index = SourceIndex.getDefault();
+
+        // imported files in the order they are declared, single type imports are explicit
+        final List<Imported> imports = new LinkedList<Imported>();
+        final Set<String> referenced = new HashSet<String>();
+        final Set<String> declared = new HashSet<String>();
 
         new Visitor() {
 
             public void visitPackageDeclaration(GNode node) throws IOException, ParseException {
                 String relPath = NodeUtil.mkString(node.getNode(1), File.separator);
-                importedSources.addAll(loadNodesFromDirectory(relPath));
+                imports.add(new Imported(loadFilesFromDirectory(relPath), false));
             }
 
             public void visitImportDeclaration(GNode node) {
                 if (node.getString(2) == null) {   // There is no '*' character in the import, import single file.
                     String relPath = NodeUtil.mkString(node.getNode(1), File.separator) + ".java";
-                    importedSources.add(loadNodeForFile(relPath));
+                    File f = loadFileForPath(relPath);
+                    if (f != null) imports.add(new Imported(Collections.singletonList(f), true));
                 } else {
                     String relPath = NodeUtil.mkString(node.getNode(1), File.separator);
-                    importedSources.addAll(loadNodesFromDirectory(relPath));
+                    imports.add(new Imported(loadFilesFromDirectory(relPath), false));
                 }
             }
 
+            public void visitClassDeclaration(GNode node) {
+                declared.add(node.getString(1));
+                visit(node);
+            }
+
+            public void visitInterfaceDeclaration(GNode node) {
+                declared.add(node.getString(1));
+                visit(node);
+            }
+
+            // type names, i.e. in declarations, casts and new, and the first identifier of qualified names
+            public void visitQualifiedIdentifier(GNode node) {
+                for (Object o : node) if (o instanceof String) referenced.add((String) o);
+            }
+
+            // names used as expressions, i.e. the class of a static call
+            public void visitPrimaryIdentifier(GNode node) {
+                referenced.add(node.getString(0));
+            }
+
             public void visit(Node n) {
                 for (Object o : n) if (o instanceof Node) dispatch((Node) o);
             }
 
-            private GNode loadNodeForFile(String relPath) {
-                GNode source = null;
-                for (String l : inputLocations) {
-                    String absPath = System.getProperty("user.dir") + File.separator + l + File.separator + relPath;
-                    File f = loadSourceFile(absPath);
-                    if (f != null) {
-                        source = (GNode) NodeUtil.parseJavaFile(f);
-                        break;
-                    }
-                }
-                if (source == null) {
-                    logger.warn("Unable to find any source file for path " + relPath);
-                }
-
-                return source;
+            private File loadFileForPath(String relPath) {
+                return index.findFile(relPath);
             }
 
-            private List<GNode> loadNodesFromDirectory(String relPath) {
-                List<GNode> sources = new LinkedList<GNode>();
-                for (String l : inputLocations) {
-                    String absPath = System.getProperty("user.dir") + File.separator + l + File.separator + relPath;
-                    Set<File> files = loadFilesInDirectory(absPath);
-                    if (files != null) {
-                        for (File f : files) {
-                            GNode n = (GNode) NodeUtil.parseJavaFile(f);
-                            if (!n.equals(primarySrc)) sources.add(n); // Don't include the primary source.
-                        }
-                        break; // stop at the first input location containing the package of the primary source
-                    }
+            private List<File> loadFilesFromDirectory(String relPath) {
+                List<File> sources = new LinkedList<File>();
+                for (File f : index.findPackage(relPath)) {
+                    if (!f.toPath().toAbsolutePath().normalize().equals(primaryPath)) sources.add(f); // Don't include the primary source.
                 }
                 return sources;
             }
 
         } .dispatch(primarySrc);
 
-        return importedSources;
-    }
-
-    private static Set<File> loadFilesInDirectory(String path) {
-        File[] directory = new File(path).listFiles();
-        if (directory == null) {
-            logger.debug("Did not find a directory at " + path);
-            return null;
+        // classes named like a file of an import or of the own package are found by name, the same goes
+        // for java.lang, anything else that looks like a class may be declared in a file of another name
+        Set<String> unresolved = new HashSet<String>();
+        Set<String> fileNames = new HashSet<String>();
+        for (Imported imported : imports) {
+            for (File f : imported.files) fileNames.add(className(f));
         }
-
-        Set<File> files = new HashSet<File>();
-        for (File f : new File(path).listFiles()) {
-            File source = loadSourceFile(f.getAbsolutePath());
-            if (source != null) files.add(source);
-        }
-        if (files.size() == 0) {
-            logger.warn("Path with no source files. " + path);
-            return null;
+        for (String name : referenced) {
+            if (!name.isEmpty() && Character.isUpperCase(name.charAt(0)) && !declared.contains(name)
+                    && !fileNames.contains(name) && !isJavaLang(name)) unresolved.add(name);
         }
 
-        return files;
+        List<File> importedFiles = new LinkedList<File>();
+        for (Imported imported : imports) {
+            for (File f : imported.files) {
+                if (imported.explicit || referenced.contains(className(f))
+                        || (!unresolved.isEmpty() && declaresAny(f, unresolved))) {
+                    importedFiles.add(f);
+                }
+            }
+        }
+        return importedFiles;
     }
 
-    private static File loadSourceFile(String path) {
-        File f = new File(path);
-        if (f == null) {
-            logger.warn("Invalid path provided for file. " + path);
-            return null;
+    private static class Imported {
+        final List<File> files;
+        final boolean explicit;
+
+        Imported(List<File> files, boolean explicit) {
+            this.files = files;
+            this.explicit = explicit;
         }
+    }
+
+    private static String className(File f) {
+        String name = f.getName();
+        return name.substring(0, name.length() - ".java".length());
+    }
 
-        if (f.isFile() && f.getName().endsWith(".java")) {
-            logger.debug("Loading " + f.getName());
-            return f;
-        } else {
-            return null;
+    // whether a source file declares a class or interface of one of the names, without parsing it
+    private static boolean declaresAny(File f, Set<String> names) {
+        try {
+            String source = new String(Files.readAllBytes(f.toPath()), "UTF-8");
+            Matcher m = DECLARATION.matcher(source);
+            while (m.find()) if (names.contains(m.group(1))) return true;
+            return false;
+        } catch (IOException e) {
+            logger.warn("Unable to read " + f + ", including it: " + e);
+            return true;
         }
     }
 
-    private static List<String> loadInputLocations() {
-        // Load input locations with correct file separator for system
-        List<String> inputLocations = new LinkedList<String>();
-        for (String l : XtcProps.getList("input.locations")) {
-            inputLocations.add(l.replaceAll("/", File.separator));
+    private static final Pattern DECLARATION = Pattern.compile("\\b(?:class|interface|enum)\\s+([A-Za-z_$][A-Za-z0-9_$]*)");
+
+    private static final Map<String, Boolean> javaLang = new ConcurrentHashMap<String, Boolean>();
+
+    private static boolean isJavaLang(String name) {
+        Boolean found = javaLang.get(name);
+        if (found == null) {
+            try {
+                Class.forName("java.lang." + name, false, JavaFiveImportParser.class.getClassLoader());
+                found = true;
+            } catch (ClassNotFoundException e) {
+                found = false;
+            }
+            javaLang.put(name, found);
         }
-        return inputLocations;
+        return found;
     }
 }
\ No newline at end of file
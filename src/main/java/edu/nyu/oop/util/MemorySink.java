@@ -0,0 +1,49 @@
+package edu.nyu.oop.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Output sink that keeps the generated files in memory, by name in the order they were first written
+ * a sink reused for another translation of the same program acts like an output directory
+ * that already holds the previous files, several threads may write into the same sink
+ *
+ * @version 1.0
+ */
+public class MemorySink implements OutputSink {
+
+    private final Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+
+    @Override
+    public synchronized boolean write(String name, byte[] contents) {
+        byte[] previous = files.put(name, contents.clone());
+        return previous == null || !Arrays.equals(previous, contents);
+    }
+
+    @Override
+    public synchronized byte[] read(String name) {
+        byte[] contents = files.get(name);
+        return contents == null ? null : contents.clone();
+    }
+
+    @Override
+    public boolean isReadable() {
+        return true;
+    }
+
+    /**
+     * @return copy of the files written so far, by name
+     */
+    public synchronized Map<String, byte[]> getFiles() {
+        Map<String, byte[]> copy = new LinkedHashMap<String, byte[]>();
+        for (Map.Entry<String, byte[]> e : files.entrySet()) copy.put(e.getKey(), e.getValue().clone());
+        return Collections.unmodifiableMap(copy);
+    }
+
+    @Override
+    public String toString() {
+        return "memory";
+    }
+}
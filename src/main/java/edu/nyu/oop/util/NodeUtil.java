@@ -9,6 +9,7 @@ import xtc.tree.Token;
 import xtc.tree.Visitor;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
@@ -73,16 +74,27 @@ public class NodeUtil {
         return nodes;
     }
 
-    // Parses a Java source file into an XTC AST
+    // Parses a Java source file into an XTC AST, reusing the AST of a previous run when the file is unchanged
     public static Node parseJavaFile(File file) {
+        Profiler.Sample sample = Profiler.start("parse", file.toString());
         try {
-            InputStream instream = new FileInputStream(file);
-            Reader in = new BufferedReader(new InputStreamReader(instream));
-            JavaFiveParser parser = new JavaFiveParser(in, file.toString(), (int) file.length());
+            byte[] source = Files.readAllBytes(file.toPath());
+            AstCache cache = AstCache.getDefault();
+
+            Node cached = cache.load(source, file.toString());
+            if (cached != null) return cached;
+
+            Reader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(source)));
+            JavaFiveParser parser = new JavaFiveParser(in, file.toString(), source.length);
             Result result = parser.pCompilationUnit(0);
-            return (Node) parser.value(result);
+            Node ast = (Node) parser.value(result);
+
+            cache.store(source, ast);
+            return ast;
         } catch (Exception e) {
             throw new RuntimeException("Unable to parse Java file " + file.getName(), e);
+        } finally {
+            sample.stop();
         }
     }
 
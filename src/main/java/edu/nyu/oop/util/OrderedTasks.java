@@ -0,0 +1,70 @@
+package edu.nyu.oop.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent tasks, one per compilation unit, on a pool of threads and hands back their
+ * results in the order of the tasks, so whatever the caller merges from them is merged in the
+ * same order for any number of threads
+ * the threads of the pool profile for the profiler of the calling thread
+ *
+ * @version 1.0
+ */
+public class OrderedTasks {
+
+    /**
+     * Runs the tasks and waits for all of them
+     *
+     * @param tasks tasks to run
+     * @param threads number of threads, 1 runs the tasks on the calling thread, 0 uses one thread per processor
+     * @return results of the tasks, in the order of the tasks
+     */
+    public static <T> List<T> run(List<Callable<T>> tasks, int threads) {
+        List<T> results = new ArrayList<T>();
+        if (threads == 0) threads = java.lang.Runtime.getRuntime().availableProcessors();
+
+        try {
+            if (threads == 1 || tasks.size() < 2) {
+                for (Callable<T> task : tasks) results.add(task.call());
+                return results;
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(Math.min(threads, tasks.size()));
+            final Profiler profiler = Profiler.current();
+            try {
+                List<Future<T>> futures = new ArrayList<Future<T>>();
+                for (final Callable<T> task : tasks) {
+                    futures.add(pool.submit(new Callable<T>() {
+                        public T call() throws Exception {
+                            Profiler.setCurrent(profiler);
+                            try {
+                                return task.call();
+                            } finally {
+                                Profiler.setCurrent(null);
+                            }
+                        }
+                    }));
+                }
+                for (Future<T> future : futures) results.add(future.get());
+                return results;
+            } finally {
+                pool.shutdown();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException("Task failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for tasks", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Task failed", e);
+        }
+    }
+}
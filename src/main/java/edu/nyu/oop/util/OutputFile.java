@@ -0,0 +1,125 @@
+package edu.nyu.oop.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writer for a generated output file that hands the file to its output sink whole
+ * output is collected in memory, flush does not reach the sink, close writes the result
+ * sinks leave a file alone, timestamp included, when its contents did not change
+ * so make style builds of the generated C++ do not recompile files that did not change
+ * counts the chars printed, the UTF-8 bytes and writes handed to the sink and the time spent writing
+ *
+ * @version 1.0
+ */
+public class OutputFile extends Writer {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final OutputSink sink;
+    private final String name;
+    private final StringBuilder buffer = new StringBuilder();
+    private boolean closed = false;
+    private boolean written = false;
+
+    private long bytes;
+    private int writes;
+    private long writeNanos;
+
+    public OutputFile(File file) {
+        this(new DirectorySink(parent(file)), file.getName());
+    }
+
+    /**
+     * @param sink sink the file is written to
+     * @param name name of the file in the sink
+     */
+    public OutputFile(OutputSink sink, String name) {
+        this.sink = sink;
+        this.name = name;
+    }
+
+    private static File parent(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory == null) throw new IllegalArgumentException("Output location not found for " + file);
+        return directory;
+    }
+
+    public OutputSink getSink() {
+        return sink;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if close replaced the contents of the file
+     */
+    public boolean isWritten() {
+        return written;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        buffer.append(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        buffer.append(str, off, off + len);
+    }
+
+    @Override
+    public void flush() {
+        // contents reach the sink on close
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        byte[] contents = buffer.toString().getBytes(UTF8);
+        long start = System.nanoTime();
+        written = sink.write(name, contents);
+        writeNanos += System.nanoTime() - start;
+        bytes += contents.length;
+        writes++;
+    }
+
+    /**
+     * @return number of chars printed into the file
+     */
+    public long getChars() {
+        return buffer.length();
+    }
+
+    /**
+     * @return number of UTF-8 bytes handed to the sink
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return number of times the file was handed to the sink, one once it is closed
+     */
+    public int getWrites() {
+        return writes;
+    }
+
+    /**
+     * @return nanoseconds spent writing the file to the sink
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return sink + "/" + name;
+    }
+}
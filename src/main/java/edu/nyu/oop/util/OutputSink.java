@@ -0,0 +1,40 @@
+package edu.nyu.oop.util;
+
+import java.io.IOException;
+
+/**
+ * Destination of the files a translation generates, output.h, output.cpp, main.cpp and the
+ * translation manifest, the printers and the session write through it instead of opening files
+ * every file is handed over whole, once its printer is closed
+ * DirectorySink writes into a directory, MemorySink keeps the files in memory and StreamSink
+ * writes them one after the other to a stream or channel of the caller
+ *
+ * @version 1.0
+ */
+public interface OutputSink {
+
+    /**
+     * Stores a generated file
+     *
+     * @param name name of the file, relative to the sink
+     * @param contents contents of the file
+     * @return true if the file was written, false if the sink already held the same contents
+     * @throws IOException if the file cannot be written
+     */
+    boolean write(String name, byte[] contents) throws IOException;
+
+    /**
+     * Reads a file stored by an earlier translation into this sink
+     *
+     * @param name name of the file, relative to the sink
+     * @return contents of the file, null if the sink does not hold it
+     * @throws IOException if the file cannot be read
+     */
+    byte[] read(String name) throws IOException;
+
+    /**
+     * @return true if the sink can read back the files written to it, so a later translation into
+     * it can use the translation manifest
+     */
+    boolean isReadable();
+}
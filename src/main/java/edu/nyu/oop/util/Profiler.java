@@ -0,0 +1,212 @@
+package edu.nyu.oop.util;
+
+import xtc.tree.Printer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records wall time, CPU time and allocated bytes of the phases of a translation, per phase and file
+ * the profiler of a translation is attached to the thread running it, code that wants to be measured
+ * calls start and stops the sample it gets back when it is done, without a profiler attached the
+ * sample does nothing, so instrumented code costs nothing when profiling is off
+ * CPU time and allocations are those of the thread running the sample, pools that work for a
+ * profiled translation attach its profiler to their threads
+ * allocated bytes are -1 on JVMs that cannot measure them
+ *
+ * @version 1.0
+ */
+public class Profiler {
+
+    private static final ThreadLocal<Profiler> current = new ThreadLocal<Profiler>();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final List<Sample> samples = new ArrayList<Sample>();
+
+    /**
+     * One measured run of a phase over a file
+     */
+    public static class Sample {
+        public final String phase;
+        public final String file;
+
+        public long wallNanos;
+        public long cpuNanos;
+        public long allocatedBytes;
+
+        private final Profiler profiler;
+
+        Sample(Profiler profiler, String phase, String file) {
+            this.profiler = profiler;
+            this.phase = phase;
+            this.file = file;
+            if (profiler == null) return;
+
+            wallNanos = System.nanoTime();
+            cpuNanos = cpuTime();
+            allocatedBytes = allocated();
+        }
+
+        Sample(String phase, String file, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.profiler = null;
+            this.phase = phase;
+            this.file = file;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * Ends the sample and records it, on the thread that started it
+         */
+        public void stop() {
+            if (profiler == null) return;
+
+            wallNanos = System.nanoTime() - wallNanos;
+            cpuNanos = cpuTime() - cpuNanos;
+            long end = allocated();
+            allocatedBytes = end < 0 || allocatedBytes < 0 ? -1 : end - allocatedBytes;
+            profiler.add(this);
+        }
+    }
+
+    /**
+     * @return profiler attached to the current thread, null if the thread is not profiled
+     */
+    public static Profiler current() {
+        return current.get();
+    }
+
+    /**
+     * Attaches a profiler to the current thread
+     *
+     * @param profiler profiler, null to stop profiling the thread
+     */
+    public static void setCurrent(Profiler profiler) {
+        if (profiler == null) current.remove();
+        else current.set(profiler);
+    }
+
+    /**
+     * Starts measuring a phase for the profiler of the current thread
+     *
+     * @param phase name of the phase
+     * @param file file the phase works on
+     * @return sample to stop when the phase is done
+     */
+    public static Sample start(String phase, String file) {
+        return new Sample(current.get(), phase, file);
+    }
+
+    private synchronized void add(Sample sample) {
+        samples.add(sample);
+    }
+
+    /**
+     * @return copy of the recorded samples, in the order they were stopped
+     */
+    public synchronized List<Sample> getSamples() {
+        return new ArrayList<Sample>(samples);
+    }
+
+    /**
+     * Sums the samples of every phase
+     *
+     * @return one sample per phase with an empty file, in the order the phases were first recorded
+     */
+    public synchronized List<Sample> getTotals() {
+        Map<String, Sample> totals = new LinkedHashMap<String, Sample>();
+        for (Sample sample : samples) {
+            Sample total = totals.get(sample.phase);
+            if (total == null) {
+                totals.put(sample.phase, new Sample(sample.phase, "", sample.wallNanos, sample.cpuNanos, sample.allocatedBytes));
+            } else {
+                total.wallNanos += sample.wallNanos;
+                total.cpuNanos += sample.cpuNanos;
+                total.allocatedBytes = total.allocatedBytes < 0 || sample.allocatedBytes < 0 ? -1 : total.allocatedBytes + sample.allocatedBytes;
+            }
+        }
+        return new ArrayList<Sample>(totals.values());
+    }
+
+    /**
+     * Prints a table of every sample followed by the totals per phase
+     *
+     * @param printer printer to print to
+     */
+    public void printTable(Printer printer) {
+        String format = "%-20s %10s %10s %12s  %s";
+        printer.pln(String.format(format, "phase", "wall ms", "cpu ms", "alloc KB", "file"));
+        for (Sample sample : getSamples()) printer.pln(row(format, sample));
+        printer.pln();
+        for (Sample total : getTotals()) printer.pln(row(format, total));
+        printer.flush();
+    }
+
+    private static String row(String format, Sample sample) {
+        return String.format(format, sample.phase,
+                             String.format("%.2f", sample.wallNanos / 1e6),
+                             String.format("%.2f", sample.cpuNanos / 1e6),
+                             sample.allocatedBytes < 0 ? "-" : String.valueOf(sample.allocatedBytes / 1024),
+                             sample.file.isEmpty() ? "(total)" : sample.file);
+    }
+
+    /**
+     * Writes the samples and the totals per phase as JSON
+     *
+     * @param file file to write
+     */
+    public void writeJson(File file) {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("{");
+            out.println("  \"samples\": [");
+            writeSamples(out, getSamples());
+            out.println("  ],");
+            out.println("  \"totals\": [");
+            writeSamples(out, getTotals());
+            out.println("  ]");
+            out.println("}");
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write " + file, e);
+        }
+    }
+
+    private static void writeSamples(PrintWriter out, List<Sample> samples) {
+        for (int i = 0; i < samples.size(); i++) {
+            Sample sample = samples.get(i);
+            out.print("    {\"phase\": " + quote(sample.phase) + ", \"file\": " + quote(sample.file)
+                      + ", \"wallNanos\": " + sample.wallNanos + ", \"cpuNanos\": " + sample.cpuNanos
+                      + ", \"allocatedBytes\": " + sample.allocatedBytes + "}");
+            out.println(i < samples.size() - 1 ? "," : "");
+        }
+    }
+
+    private static String quote(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') quoted.append('\\').append(c);
+            else if (c < ' ') quoted.append(String.format("\\u%04x", (int) c));
+            else quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocated() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+            if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,154 @@
+package edu.nyu.oop.util;
+
+import xtc.lang.JavaEntities;
+import xtc.type.ClassOrInterfaceT;
+import xtc.type.MethodT;
+import xtc.type.Type;
+import xtc.util.Runtime;
+import xtc.util.SymbolTable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of the method and type lookups the Mangler makes in one symbol table
+ * calls are resolved by receiver type, method name and argument types, type names by scope and name
+ * which methods are accessible depends on the class the lookup is made from, so the cache is
+ * emptied whenever the current class of the symbol table changes, lookups made from the same
+ * class resolve to the same method as long as the class does not change
+ * the classpath is computed once instead of on every lookup
+ * unresolved lookups are cached as well, hits and misses are counted
+ *
+ * @version 1.0
+ */
+public class ResolutionCache {
+
+    private final SymbolTable table;
+    private final List<File> classpath;
+
+    private final Map<String, MethodT> methods = new HashMap<String, MethodT>();
+    private final Map<String, Type> types = new HashMap<String, Type>();
+
+    // class the cached lookups were made from
+    private ClassOrInterfaceT currentType;
+
+    private int hits;
+    private int misses;
+    private int invalidations;
+
+    /**
+     * Resolves a method the cache does not have yet
+     */
+    public interface MethodResolver {
+        MethodT resolve(Type base, String name, List<Type> actuals);
+    }
+
+    /**
+     * @param runtime xtc runtime, for the classpath
+     * @param table symbol table the lookups are made in
+     */
+    public ResolutionCache(Runtime runtime, SymbolTable table) {
+        this.table = table;
+        this.classpath = JavaEntities.classpath(runtime);
+    }
+
+    /**
+     * @return classpath of the runtime
+     */
+    public List<File> classpath() {
+        return classpath;
+    }
+
+    /**
+     * Resolves a method like JavaEntities.typeDotMethod, searching parents
+     *
+     * @param base type the method is called on
+     * @param name name of the method
+     * @param actuals types of the arguments
+     * @return the method, null if none applies
+     */
+    public MethodT typeDotMethod(Type base, String name, List<Type> actuals) {
+        return method("typeDotMethod", base, name, actuals, new MethodResolver() {
+            public MethodT resolve(Type base, String name, List<Type> actuals) {
+                return JavaEntities.typeDotMethod(table, classpath, base, true, name, actuals);
+            }
+        });
+    }
+
+    /**
+     * Resolves a method with a resolver of the caller, results of different resolvers are kept apart by kind
+     *
+     * @param kind name of the resolver
+     * @param base type the method is called on
+     * @param name name of the method
+     * @param actuals types of the arguments
+     * @param resolver resolver run on a miss
+     * @return the method, null if none applies
+     */
+    public MethodT method(String kind, Type base, String name, List<Type> actuals, MethodResolver resolver) {
+        validate();
+        String key = kind + ' ' + base + '.' + name + actuals;
+        if (methods.containsKey(key)) {
+            hits++;
+            return methods.get(key);
+        }
+        misses++;
+        MethodT method = resolver.resolve(base, name, actuals);
+        methods.put(key, method);
+        return method;
+    }
+
+    /**
+     * Resolves a simple type name like JavaEntities.simpleNameToType
+     *
+     * @param scope qualified name of the scope the name is used in
+     * @param name simple name
+     * @return the type, null if the name is not a type
+     */
+    public Type simpleNameToType(String scope, String name) {
+        validate();
+        String key = scope + ' ' + name;
+        if (types.containsKey(key)) {
+            hits++;
+            return types.get(key);
+        }
+        misses++;
+        Type type = JavaEntities.simpleNameToType(table, classpath, scope, name);
+        types.put(key, type);
+        return type;
+    }
+
+    // empties the cache if the current class changed since the last lookup
+    private void validate() {
+        ClassOrInterfaceT type = JavaEntities.currentType(table);
+        if (type == currentType) return;
+
+        if (!methods.isEmpty() || !types.isEmpty()) invalidations++;
+        methods.clear();
+        types.clear();
+        currentType = type;
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that were resolved
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of times the cache was emptied because the current class changed
+     */
+    public int getInvalidations() {
+        return invalidations;
+    }
+}
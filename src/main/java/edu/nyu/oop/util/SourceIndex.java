@@ -0,0 +1,144 @@
+package edu.nyu.oop.util;
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the Java source files under input.locations, by directory
+ * a directory is listed the first time a package or file in it is looked up, after that lookups
+ * are hash lookups in its listing
+ * listings live as long as the JVM, every run checks the modification time of a directory once
+ * before it uses its listing again and lists it again only if it changed, so a long running
+ * translator sees new and deleted files without listing every directory on every import
+ * the files of a package are handed out sorted by name, whatever order the file system lists
+ * them in, so dependencies are found and translated in the same order on every machine
+ *
+ * @version 1.0
+ */
+public class SourceIndex {
+    private static Logger logger = org.slf4j.LoggerFactory.getLogger(SourceIndex.class);
+
+    private static SourceIndex instance;
+
+    private final List<String> roots;
+
+    // listings by absolute directory path
+    private final Map<String, Listing> listings = new HashMap<String, Listing>();
+
+    private static final Comparator<File> BY_NAME = new Comparator<File>() {
+        public int compare(File a, File b) {
+            return a.getName().compareTo(b.getName());
+        }
+    };
+    private int run;
+
+    private static class Listing {
+        long modified;
+        int checkedInRun;
+
+        // names of the Java files, and the files sorted by name
+        Map<String, File> byName = new HashMap<String, File>();
+        List<File> sources = new ArrayList<File>();
+    }
+
+    /**
+     * @param roots absolute paths of the source roots, searched in order
+     */
+    public SourceIndex(List<String> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * Gets the index of the input.locations in xtc.properties, relative to the project root
+     *
+     * @return the shared index
+     */
+    public static synchronized SourceIndex getDefault() {
+        if (instance == null) {
+            List<String> roots = new LinkedList<String>();
+            for (String l : XtcProps.getList("input.locations")) {
+                roots.add(System.getProperty("user.dir") + File.separator + l.replaceAll("/", File.separator));
+            }
+            instance = new SourceIndex(roots);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a new run, every directory used from now on is checked for changes once
+     */
+    public synchronized void newRun() {
+        run++;
+    }
+
+    /**
+     * Finds a source file in the first root that has it
+     *
+     * @param relPath path of the file relative to a root, i.e. a/b/C.java
+     * @return the file, null if no root has it
+     */
+    public synchronized File findFile(String relPath) {
+        int slash = relPath.lastIndexOf(File.separatorChar);
+        String directory = slash < 0 ? "" : File.separator + relPath.substring(0, slash);
+        String name = relPath.substring(slash + 1);
+
+        for (String root : roots) {
+            File f = listing(root + directory).byName.get(name);
+            if (f != null) return f;
+        }
+        logger.warn("Unable to find any source file for path " + relPath);
+        return null;
+    }
+
+    /**
+     * Finds the source files of a package in the first root whose directory of the package has any
+     *
+     * @param relPath directory of the package relative to a root, i.e. a/b
+     * @return the files, sorted by file name, empty if no root has any
+     */
+    public synchronized List<File> findPackage(String relPath) {
+        for (String root : roots) {
+            String path = root + File.separator + relPath;
+            Listing listing = listing(path);
+            if (!listing.sources.isEmpty()) return new ArrayList<File>(listing.sources);
+
+            if (listing.modified == 0) logger.debug("Did not find a directory at " + path);
+            else logger.warn("Path with no source files. " + path);
+        }
+        return new ArrayList<File>();
+    }
+
+    private Listing listing(String path) {
+        Listing listing = listings.get(path);
+        if (listing != null && listing.checkedInRun == run) return listing;
+
+        File directory = new File(path);
+        long modified = directory.lastModified();
+        if (listing == null || listing.modified != modified) {
+            listing = new Listing();
+            listing.modified = modified;
+
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    if (f.isFile() && f.getName().endsWith(".java")) {
+                        listing.byName.put(f.getName(), f);
+                        listing.sources.add(f);
+                    }
+                }
+            }
+            Collections.sort(listing.sources, BY_NAME);
+            listings.put(path, listing);
+        }
+        listing.checkedInRun = run;
+        return listing;
+    }
+}
@@ -0,0 +1,111 @@
+package edu.nyu.oop.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Output sink that writes the generated files one after the other to a stream or channel of the
+ * caller, in the order their printers are closed
+ * every file is framed by a header line holding its name and its length in bytes, separated by
+ * a space, followed by exactly that many bytes of contents, readFiles splits a stream back up
+ * nothing is read back, so the translation manifest is not written and every translation into a
+ * stream regenerates every file
+ * the stream is flushed after every file and never closed, that is up to the caller
+ *
+ * @version 1.0
+ */
+public class StreamSink implements OutputSink {
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+
+    public StreamSink(OutputStream stream) {
+        this.stream = stream;
+        this.channel = null;
+    }
+
+    public StreamSink(WritableByteChannel channel) {
+        this.stream = null;
+        this.channel = channel;
+    }
+
+    @Override
+    public synchronized boolean write(String name, byte[] contents) throws IOException {
+        if (name.isEmpty() || name.contains(" ") || name.contains("\n")) {
+            throw new IllegalArgumentException("File name " + name + " cannot be framed");
+        }
+        byte[] header = (name + " " + contents.length + "\n").getBytes(StandardCharsets.UTF_8);
+        if (stream != null) {
+            stream.write(header);
+            stream.write(contents);
+            stream.flush();
+        } else {
+            ByteBuffer buffer = ByteBuffer.wrap(header);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer = ByteBuffer.wrap(contents);
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] read(String name) {
+        return null;
+    }
+
+    @Override
+    public boolean isReadable() {
+        return false;
+    }
+
+    /**
+     * Splits a stream written by a StreamSink back into its files
+     *
+     * @param in stream to read, up to its end
+     * @return contents of the files by name, in the order they were written
+     * @throws IOException if the stream cannot be read or is not framed like a StreamSink frames it
+     */
+    public static Map<String, byte[]> readFiles(InputStream in) throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        while (true) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') header.write(b);
+            if (b == -1) {
+                if (header.size() == 0) return files;
+                throw new EOFException("Stream ends within a file header");
+            }
+
+            String line = new String(header.toByteArray(), StandardCharsets.UTF_8);
+            int space = line.lastIndexOf(' ');
+            if (space <= 0) throw new IOException("Malformed file header " + line);
+            int length;
+            try {
+                length = Integer.parseInt(line.substring(space + 1));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed file header " + line, e);
+            }
+
+            byte[] contents = new byte[length];
+            for (int read = 0; read < length; ) {
+                int n = in.read(contents, read, length - read);
+                if (n == -1) throw new EOFException("Stream ends within " + line.substring(0, space));
+                read += n;
+            }
+            files.put(line.substring(0, space), contents);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return stream != null ? "stream" : "channel";
+    }
+}
@@ -0,0 +1,45 @@
+package edu.nyu.oop;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchTranslatorTest {
+    private static Logger logger = org.slf4j.LoggerFactory.getLogger(BatchTranslatorTest.class);
+
+    @Test
+    public void testInputsOfDirectory() throws Exception {
+        List<File> inputs = BatchTranslator.inputs(new File("src/test/java/inputs"));
+        assertTrue("All test programs found", inputs.contains(new File("src/test/java/inputs/test000/Test000.java")));
+        assertTrue("All test programs found", inputs.contains(new File("src/test/java/inputs/test050/Test050.java")));
+        assertFalse("Classes without main are not inputs", inputs.contains(new File("src/test/java/inputs/testPackage/A.java")));
+    }
+
+    // each input goes to its own directory, so running them at the same time must not mix them up
+    @Test
+    public void testTranslateConcurrently() throws Exception {
+        logger.debug("Executing BatchTranslatorTest");
+        File root = new File("src/test/java/inputs");
+        List<File> inputs = Arrays.asList(new File(root, "test001/Test001.java"),
+                                          new File(root, "test010/Test010.java"),
+                                          new File(root, "test020/Test020.java"));
+        String output = Files.createTempDirectory("batch").toString() + "/";
+
+        List<BatchTranslator.Result> results = new BatchTranslator(output, 3).translate(root, inputs);
+
+        assertEquals(3, results.size());
+        for (BatchTranslator.Result result : results) {
+            assertTrue(result.source.getPath(), result.ok);
+            assertTrue(result.outputLocation, new File(result.outputLocation, "output.cpp").isFile());
+        }
+        assertEquals(output + "test010/Test010/", results.get(1).outputLocation);
+        String header = new String(Files.readAllBytes(new File(output, "test010/Test010/output.h").toPath()));
+        assertTrue("Header of test010 holds its own classes", header.contains("__Test010"));
+    }
+}
@@ -0,0 +1,188 @@
+package edu.nyu.oop;
+
+import edu.nyu.oop.util.MemorySink;
+import edu.nyu.oop.util.NodeUtil;
+import edu.nyu.oop.util.StreamSink;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentTranslationTest {
+    private static Logger logger = org.slf4j.LoggerFactory.getLogger(ConcurrentTranslationTest.class);
+
+    private static final String[] OUTPUTS = {"output.h", "output.cpp", "main.cpp"};
+
+    private static void translate(String name, String outputLocation) {
+        File source = new File("src/test/java/inputs/test" + name + "/Test" + name + ".java");
+        new File(outputLocation).mkdirs();
+        new TranslationSession(XtcTestUtils.newRuntime(), NodeUtil.parseJavaFile(source)).translate(outputLocation);
+    }
+
+    // all 51 test programs translated at the same time give the same files as one after the other
+    @Test
+    public void testParallelMatchesSerial() throws Exception {
+        logger.debug("Executing ConcurrentTranslationTest");
+        final String serial = Files.createTempDirectory("serial").toString() + "/";
+        final String parallel = Files.createTempDirectory("parallel").toString() + "/";
+
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i <= 50; i++) names.add(String.format("%03d", i));
+
+        for (String name : names) translate(name, serial + name + "/");
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (final String name : names) {
+                futures.add(pool.submit(new Callable<Object>() {
+                    public Object call() {
+                        translate(name, parallel + name + "/");
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) future.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        for (String name : names) {
+            assertTrue("test" + name + " translated", new File(serial + name, "output.cpp").isFile());
+            for (String output : OUTPUTS) {
+                File s = new File(serial + name, output);
+                File p = new File(parallel + name, output);
+                assertEquals("test" + name + " " + output + " exists", s.isFile(), p.isFile());
+                if (s.isFile()) {
+                    assertArrayEquals("test" + name + " " + output, Files.readAllBytes(s.toPath()), Files.readAllBytes(p.toPath()));
+                }
+            }
+        }
+    }
+
+    // translations into memory running at the same time give the files a translation into a directory gives
+    @Test
+    public void testMemorySinks() throws Exception {
+        final String directory = Files.createTempDirectory("directory").toString() + "/";
+        final String[] names = {"001", "016", "025", "042"};
+        for (String name : names) translate(name, directory + name + "/");
+
+        final List<MemorySink> sinks = new ArrayList<MemorySink>();
+        ExecutorService pool = Executors.newFixedThreadPool(names.length);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (final String name : names) {
+                final MemorySink sink = new MemorySink();
+                sinks.add(sink);
+                futures.add(pool.submit(new Callable<Object>() {
+                    public Object call() {
+                        File source = new File("src/test/java/inputs/test" + name + "/Test" + name + ".java");
+                        new TranslationSession(XtcTestUtils.newRuntime(), NodeUtil.parseJavaFile(source)).translate(sink);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) future.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            Map<String, byte[]> files = sinks.get(i).getFiles();
+            assertTrue("test" + names[i] + " translated", files.containsKey("output.cpp"));
+            for (String output : OUTPUTS) {
+                File d = new File(directory + names[i], output);
+                assertEquals("test" + names[i] + " " + output + " exists", d.isFile(), files.containsKey(output));
+                if (d.isFile()) assertArrayEquals("test" + names[i] + " " + output, Files.readAllBytes(d.toPath()), files.get(output));
+            }
+        }
+
+        // a second translation into the same sink finds the manifest and changes nothing
+        File source = new File("src/test/java/inputs/test001/Test001.java");
+        assertTrue(new TranslationSession(XtcTestUtils.newRuntime(), NodeUtil.parseJavaFile(source)).translate(sinks.get(0)).isEmpty());
+
+        // a stream gets every file framed by its name and length, and no manifest
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        new TranslationSession(XtcTestUtils.newRuntime(), NodeUtil.parseJavaFile(source)).translate(new StreamSink(stream));
+        Map<String, byte[]> streamed = StreamSink.readFiles(new ByteArrayInputStream(stream.toByteArray()));
+        Map<String, byte[]> kept = new LinkedHashMap<String, byte[]>(sinks.get(0).getFiles());
+        assertNotNull(kept.remove(TranslationManifest.FILE_NAME));
+        assertEquals(new ArrayList<String>(kept.keySet()), new ArrayList<String>(streamed.keySet()));
+        for (String output : kept.keySet()) assertArrayEquals(output + " in stream", kept.get(output), streamed.get(output));
+    }
+
+    // translating the same program again, in either mode, gives the same files in the same order, byte for byte
+    @Test
+    public void testRepeatedRunsIdentical() throws Exception {
+        for (String name : new String[] {"016", "025", "030", "042"}) {
+            for (boolean sharded : new boolean[] {false, true}) {
+                List<String> order = null;
+                Map<String, byte[]> first = null;
+                for (int run = 0; run < 3; run++) {
+                    File source = new File("src/test/java/inputs/test" + name + "/Test" + name + ".java");
+                    TranslationSession session = new TranslationSession(XtcTestUtils.newRuntime(), NodeUtil.parseJavaFile(source));
+                    session.setSharded(sharded);
+                    MemorySink sink = new MemorySink();
+                    session.translate(sink);
+
+                    Map<String, byte[]> files = sink.getFiles();
+                    if (first == null) {
+                        first = files;
+                        order = new ArrayList<String>(files.keySet());
+                        continue;
+                    }
+                    assertEquals("test" + name + " files", order, new ArrayList<String>(files.keySet()));
+                    for (String file : order) assertArrayEquals("test" + name + " " + file, first.get(file), files.get(file));
+                }
+            }
+        }
+    }
+
+    // the same translator classes get the same stamp wherever they are and however they were packaged
+    @Test
+    public void testTranslatorStampSameEverywhere() throws Exception {
+        String[] names = {"edu/nyu/oop/Boot.class", "edu/nyu/oop/util/Profiler.class"};
+        byte[][] contents = {{1, 2, 3}, {4, 5}};
+
+        File first = Files.createTempDirectory("classes").toFile();
+        File second = Files.createTempDirectory("checkout").toFile();
+        for (int i = 0; i < names.length; i++) {
+            // written in the opposite order, so the directories list them differently
+            for (File root : new File[] {first, second}) {
+                int j = root == first ? i : names.length - 1 - i;
+                File file = new File(root, names[j]);
+                file.getParentFile().mkdirs();
+                Files.write(file.toPath(), contents[j]);
+            }
+        }
+
+        File jar = File.createTempFile("translator", ".jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (int i = names.length - 1; i >= 0; i--) {
+                out.putNextEntry(new ZipEntry(names[i]));
+                out.write(contents[i]);
+                out.closeEntry();
+            }
+        }
+
+        String stamp = TranslationManifest.translatorStamp(first);
+        assertEquals(stamp, TranslationManifest.translatorStamp(second));
+        assertEquals(stamp, TranslationManifest.translatorStamp(jar));
+    }
+}
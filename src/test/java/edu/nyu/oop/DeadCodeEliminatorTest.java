@@ -0,0 +1,31 @@
+package edu.nyu.oop;
+
+import org.junit.Test;
+import xtc.tree.Node;
+
+import static org.junit.Assert.*;
+
+public class DeadCodeEliminatorTest {
+
+    private static String layout(String testFile) {
+        Node node = XtcTestUtils.loadTestFile("src/test/java/inputs/test" + testFile + "/Test" + testFile + ".java");
+        return new TranslationSession(XtcTestUtils.newRuntime(), node).getCppAsts().get(0).toString();
+    }
+
+    // A.get is never called in test028, its constructor is
+    @Test
+    public void testUncalledMethodIsRemoved() {
+        String layout = layout("028");
+        assertTrue("A is kept", layout.contains("ClassDeclaration(\"__A\""));
+        assertFalse("get_ is still declared", layout.contains("get_"));
+    }
+
+    // B is never used in test040, C and its parent A are
+    @Test
+    public void testUnusedClassIsRemoved() {
+        String layout = layout("040");
+        assertTrue("A is kept", layout.contains("ClassDeclaration(\"__A\""));
+        assertTrue("C is kept", layout.contains("ClassDeclaration(\"__C\""));
+        assertFalse("B is still declared", layout.contains("ClassDeclaration(\"__B\""));
+    }
+}
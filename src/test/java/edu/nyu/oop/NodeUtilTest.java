@@ -1,10 +1,15 @@
 package edu.nyu.oop;
 
+import edu.nyu.oop.util.AstCache;
 import edu.nyu.oop.util.NodeUtil;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import xtc.tree.GNode;
+import xtc.tree.Node;
+
+import java.io.File;
+import java.nio.file.Files;
 
 import static org.junit.Assert.*;
 
@@ -41,6 +46,29 @@ public class NodeUtilTest {
         testDuplicate(node, duplicatedNode);
     }
 
+    @Test
+    public void testAstCacheRoundTrip() throws Exception {
+        File file = new File("src/test/java/edu/nyu/oop/XtcTestUtils.java");
+        byte[] source = Files.readAllBytes(file.toPath());
+        AstCache cache = new AstCache(Files.createTempDirectory("ast-cache").toFile());
+
+        assertNull("Empty cache should miss", cache.load(source, file.toString()));
+        cache.store(source, node);
+        Node cached = cache.load(source, file.toString());
+
+        assertEquals("Cached AST holds the same data", node, cached);
+        testSameShape(node, cached);
+    }
+
+    // equals does not look at locations or at whether a node can grow
+    private void testSameShape(Node a, Node b) {
+        assertEquals("Location of " + a.getName(), a.getLocation().toString(), b.getLocation().toString());
+        assertEquals("Variable " + a.getName(), a.hasVariable(), b.hasVariable());
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) instanceof Node) testSameShape(a.getNode(i), b.getNode(i));
+        }
+    }
+
     private void testDuplicate(GNode a, GNode b) {
         assertEquals("GNodes hold the same data", a, b);
         assertNotSame("GNodes are different locations in memory", a, b);
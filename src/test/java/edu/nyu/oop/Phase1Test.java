@@ -1,10 +1,15 @@
 package edu.nyu.oop;
 
+import edu.nyu.oop.util.NodeUtil;
+import edu.nyu.oop.util.Profiler;
+import edu.nyu.oop.util.ResolutionCache;
+import edu.nyu.oop.util.SymbolTableBuilder;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import xtc.tree.GNode;
 import xtc.tree.Node;
+import xtc.util.SymbolTable;
 
 import java.nio.file.Path;
 import java.util.*;
@@ -51,4 +56,124 @@ public class Phase1Test {
             }
         }
     }
+
+    // Testing if parsing dependencies in parallel results in the same ASTs, in the same order
+    @Test
+    public void testParallelParse() {
+        Node primary = XtcTestUtils.loadTestFile("src/test/java/inputs/testPackage/Test.java");
+        List<GNode> serial = Phase1.parse(primary, 1);
+        List<GNode> parallel = Phase1.parse(primary, 4);
+
+        assertEquals("Number of ASTs", serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals("File of AST " + i, serial.get(i).getLocation().file, parallel.get(i).getLocation().file);
+            assertTrue("AST " + i + " is not the same", serial.get(i).equals(parallel.get(i)));
+        }
+    }
+
+    // Testing that each dependency is parsed once and the primary source not at all,
+    // A.java is referenced by Test.java, the wildcard import of test000 in A.java is never used
+    @Test
+    public void testEachFileParsedOnce() {
+        Node primary = XtcTestUtils.loadTestFile("src/test/java/inputs/testPackage/Test.java");
+
+        for (int threads : new int[] {1, 4}) {
+            Profiler profiler = new Profiler();
+            Profiler.setCurrent(profiler);
+            try {
+                Phase1.parse(primary, threads);
+            } finally {
+                Profiler.setCurrent(null);
+            }
+
+            Set<String> parsed = new HashSet<String>();
+            for (Profiler.Sample sample : profiler.getSamples()) {
+                assertTrue("Parsed twice " + sample.file, parsed.add(sample.file));
+                assertFalse("Parsed primary source", sample.file.endsWith("Test.java"));
+            }
+            assertEquals("Files parsed with " + threads + " threads", 1, parsed.size());
+            assertTrue("Parsed A.java", parsed.iterator().next().endsWith("A.java"));
+        }
+    }
+
+    // Testing that the declaration pass lets a single call pass resolve as many calls as two full passes did
+    @Test
+    public void testSinglePassMangling() {
+        for (String test : new String[] {"006", "026", "050"}) {
+            String file = "src/test/java/inputs/test" + test + "/Test" + test + ".java";
+
+            Node single = XtcTestUtils.loadTestFile(file);
+            Phase1.mangle(XtcTestUtils.newRuntime(), new SymbolTableBuilder(XtcTestUtils.newRuntime()).getTable(single), single);
+
+            Node twice = XtcTestUtils.loadTestFile(file);
+            Phase1.Mangler mangler = new Phase1.Mangler(XtcTestUtils.newRuntime(), new SymbolTableBuilder(XtcTestUtils.newRuntime()).getTable(twice));
+            mangler.dispatch(twice);
+            mangler.dispatch(twice);
+
+            assertEquals("Mangled calls of test " + test, mangledCalls(twice), mangledCalls(single));
+        }
+    }
+
+    // Testing that repeated calls are resolved once per class and the cache starts over in every class
+    @Test
+    public void testResolutionCache() {
+        for (String test : new String[] {"010", "012"}) {
+            Node node = XtcTestUtils.loadTestFile("src/test/java/inputs/test" + test + "/Test" + test + ".java");
+            Phase1.Mangler mangler = new Phase1.Mangler(XtcTestUtils.newRuntime(), new SymbolTableBuilder(XtcTestUtils.newRuntime()).getTable(node));
+            mangler.dispatch(node);
+
+            ResolutionCache resolutions = mangler.getResolutions();
+            logger.debug("Test " + test + ": " + resolutions.getHits() + " hits, " + resolutions.getMisses() + " misses");
+            assertTrue("Cache hits of test " + test, resolutions.getHits() > 0);
+            assertTrue("Cache misses of test " + test, resolutions.getMisses() > 0);
+            assertTrue("Cache invalidations of test " + test, resolutions.getInvalidations() > 0);
+        }
+    }
+
+    // Testing that building the symbol tables and mangling on several threads gives the same ASTs and initializers
+    @Test
+    public void testParallelFrontEnd() {
+        List<String> expected = null;
+        for (int threads : new int[] {1, 4}) {
+            List<GNode> asts = Phase1.parse(XtcTestUtils.loadTestFile("src/test/java/inputs/testPackage/Test.java"), 1);
+            List<SymbolTable> tables = Phase1.buildTables(XtcTestUtils.newRuntime(), asts, threads);
+            HashMap<String, ArrayList<Phase1.Initializer>> initializers = Phase1.mangle(XtcTestUtils.newRuntime(), tables, asts, threads);
+
+            List<String> result = new ArrayList<String>();
+            for (GNode ast : asts) result.add(ast.toString() + mangledCalls(ast));
+            result.add(new TreeSet<String>(initializers.keySet()).toString());
+
+            if (expected == null) expected = result;
+            else assertEquals("Mangled ASTs with " + threads + " threads", expected, result);
+        }
+        assertEquals("Number of ASTs", 3, expected.size());
+    }
+
+    private static List<String> mangledCalls(Node root) {
+        List<String> names = new ArrayList<String>();
+        for (Node call : NodeUtil.dfsAll(root, "CallExpression")) names.add(String.valueOf(call.getProperty("mangledName")));
+        return names;
+    }
+
+    // a session builds the symbol table of every AST once and shares it with mangling and Phase 4
+    @Test
+    public void testSymbolTablesBuiltOnce() {
+        Profiler profiler = new Profiler();
+        Profiler.setCurrent(profiler);
+        try {
+            TranslationSession session = new TranslationSession(XtcTestUtils.newRuntime(),
+                    XtcTestUtils.loadTestFile("src/test/java/inputs/test012/Test012.java"));
+            List<SymbolTable> tables = session.getTables();
+            session.getLoweredAsts();
+            assertSame(tables, session.getTables());
+
+            int built = 0;
+            for (Profiler.Sample sample : profiler.getSamples()) {
+                if (sample.phase.equals("SymbolTableBuilder")) built++;
+            }
+            assertEquals(session.getJavaAsts().size(), built);
+        } finally {
+            Profiler.setCurrent(null);
+        }
+    }
 }
@@ -13,6 +13,7 @@ import xtc.tree.Node;
 import xtc.util.Runtime;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import static org.junit.Assert.*;
@@ -132,19 +133,19 @@ public class Phase2Test {
 
         assertTrue("HASHCODE VMethod Modifier", methods.get(2).accessModifier.equals("public"));
         assertTrue("HASHCODE VMethod Name", methods.get(2).name.equals("hashCode"));
-        assertTrue("HASHCODE VMethod Initial",methods.get(2).initial.equals("(&__Object::__hashCode)"));
+        assertTrue("HASHCODE VMethod Initial",methods.get(2).initial.equals("(&__Object::hashCode)"));
 
         assertTrue("EQUALS VMethod Modifier", methods.get(3).accessModifier.equals("public"));
         assertTrue("EQUALS VMethod Name", methods.get(3).name.equals("equals"));
-        assertTrue("EQUALS VMethod Initial",methods.get(3).initial.equals("(&__Object::__equals)"));
+        assertTrue("EQUALS VMethod Initial",methods.get(3).initial.equals("(&__Object::equals)"));
 
         assertTrue("GETCLASS VMethod Modifier", methods.get(4).accessModifier.equals("public"));
         assertTrue("GETCLASS VMethod Name", methods.get(4).name.equals("getClass"));
-        assertTrue("GETCLASS VMethod Initial",methods.get(4).initial.equals("(&__Object::__getClass)"));
+        assertTrue("GETCLASS VMethod Initial",methods.get(4).initial.equals("(&__Object::getClass)"));
 
         assertTrue("TOSTRING VMethod Modifier", methods.get(5).accessModifier.equals("public"));
         assertTrue("TOSTRING VMethod Name", methods.get(5).name.equals("toString"));
-        assertTrue("TOSTRING VMethod Initial",methods.get(5).initial.equals("(&__Object::__toString)"));
+        assertTrue("TOSTRING VMethod Initial",methods.get(5).initial.equals("(&__Object::toString)"));
 
         List<Constructor> constructorObj = filled.get(0).classRep.constructors;
         assertTrue("OBJECT Modifier", constructorObj.get(0).accessModifier.equals("public"));
@@ -158,6 +159,71 @@ public class Phase2Test {
 
     }
 
+    @Test
+    public void testFillChildBeforeParent() {
+        ObjectRep c = new ObjectRep("C");
+        c.parent = new ObjectRep("B");
+        ObjectRep b = new ObjectRep("B");
+        b.parent = new ObjectRep("A");
+        ObjectRep a = new ObjectRep("A");
+
+        Phase2.ObjectRepList unfilled = new Phase2.ObjectRepList();
+        unfilled.add(c);
+        unfilled.add(b);
+        unfilled.add(a);
+
+        HashMap<String, String> inheritance = new HashMap<String, String>();
+        Phase2.ObjectRepList filled = Phase2.fill(Phase2.initializeRepList(), unfilled, inheritance);
+
+        assertEquals(6, filled.size());
+        assertSame(a, filled.get(3));
+        assertSame(b, filled.get(4));
+        assertSame(c, filled.get(5));
+        assertSame(b, c.parent);
+        assertSame(filled.get(0), a.parent);
+        assertEquals("B", inheritance.get("C"));
+        assertEquals("", inheritance.get("A"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testFillUnknownSuperclass() {
+        ObjectRep a = new ObjectRep("A");
+        a.parent = new ObjectRep("Missing");
+
+        Phase2.ObjectRepList unfilled = new Phase2.ObjectRepList();
+        unfilled.add(a);
+        Phase2.fill(Phase2.initializeRepList(), unfilled);
+    }
+
+    @Test
+    public void testVTableOverridesKeepSlots() {
+        ObjectRep a = new ObjectRep("A");
+        a.classRep.methods.add(new Method("public", false, "String", "toString", new ArrayList<Parameter>()));
+        a.classRep.methods.add(new Method("public", false, "void", "m", new ArrayList<Parameter>()));
+        ObjectRep b = new ObjectRep("B");
+        b.parent = new ObjectRep("A");
+        b.classRep.methods.add(new Method("public", false, "void", "m", new ArrayList<Parameter>()));
+        b.classRep.methods.add(new Method("public", false, "void", "n", new ArrayList<Parameter>()));
+
+        Phase2.ObjectRepList unfilled = new Phase2.ObjectRepList();
+        unfilled.add(a);
+        unfilled.add(b);
+        Phase2.ObjectRepList filled = Phase2.getFilledObjectRepList(unfilled);
+
+        assertEquals("A", filled.get(0).name);
+        assertEquals("B", filled.get(1).name);
+        List<VMethod> aSlots = filled.get(0).vtable.methods;
+        List<VMethod> bSlots = filled.get(1).vtable.methods;
+        assertEquals(aSlots.size() + 1, bSlots.size());
+        for (int i = 0; i < aSlots.size(); i++) assertEquals(aSlots.get(i).name, bSlots.get(i).name);
+
+        assertEquals("(&__B::m)", bSlots.get(bSlots.size() - 2).initial);
+        assertEquals("n", bSlots.get(bSlots.size() - 1).name);
+        for (VMethod slot : bSlots) {
+            if (slot.name.equals("toString")) assertTrue(slot.initial, slot.initial.endsWith("&__A::toString)"));
+        }
+    }
+
     @Test
     public void testBuildCppAst() {
         Phase2.Phase2Visitor visitor = new Phase2.Phase2Visitor();
@@ -205,4 +271,25 @@ public class Phase2Test {
         assertTrue("FieldName", fieldNode.get(2).toString().equals("FieldName(\"dus\")"));
         assertTrue("Initial", fieldNode.get(3).toString().equals("Initial(\"d\")"));
     }
+
+    // the built in classes are loaded once from their descriptor and come out of a translation unchanged
+    @Test
+    public void testBuiltInClassesShared() {
+        List<ObjectRep> builtIns = BuiltInClasses.get();
+        assertEquals(3, builtIns.size());
+        assertEquals("Class", builtIns.get(2).name);
+        assertSame(builtIns.get(0), builtIns.get(2).parent);
+        assertSame(builtIns.get(1), Phase2.initializeRepList().get(1));
+
+        int slots = builtIns.get(1).vtable.fields.size();
+        String first = Phase2.runPhase2(XtcTestUtils.loadTestFile("src/test/java/inputs/test016/Test016.java")).getCppAst().toString();
+        String second = Phase2.runPhase2(XtcTestUtils.loadTestFile("src/test/java/inputs/test016/Test016.java")).getCppAst().toString();
+        assertEquals(first, second);
+        assertEquals(slots, builtIns.get(1).vtable.fields.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testBuiltInClassesReadOnly() {
+        BuiltInClasses.get().add(new ObjectRep("Thread"));
+    }
 }
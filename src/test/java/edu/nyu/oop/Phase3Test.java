@@ -35,7 +35,7 @@ public class Phase3Test {
 
         cppAsts = new ArrayList<Node>();
         for (Node javaAst : ast) {
-            Node cppAst = Phase2.runPhase2(javaAst);
+            Node cppAst = Phase2.runPhase2(javaAst).getCppAst();
             cppAsts.add(cppAst);
         }
     }
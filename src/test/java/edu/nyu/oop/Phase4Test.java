@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import xtc.tree.GNode;
 import xtc.tree.Node;
 import xtc.util.Runtime;
+import xtc.util.SymbolTable;
 
 import java.util.*;
 
@@ -33,10 +34,9 @@ public class Phase4Test {
         ArrayList<Node> cppAsts = new ArrayList<Node>();
 
         for (Node javaAst : javaAsts) {
-            Phase2 phase2 = new Phase2();
-            Node cppAst = Phase2.runPhase2(javaAst);
-            cppAsts.add(cppAst);
-            childrenToParents.putAll(Phase2.childrenToParents);
+            Phase2.Result result = Phase2.runPhase2(javaAst);
+            cppAsts.add(result.getCppAst());
+            childrenToParents.putAll(result.getChildrenToParents());
         }
     }
 
@@ -81,4 +81,54 @@ public class Phase4Test {
            }
        }
     }
+
+    // lowering the ASTs of a program on several threads gives the same ASTs and primitive arrays as one thread
+    @Test
+    public void testParallelLowering() {
+        List<String> expected = null;
+        for (int threads : new int[] {1, 4}) {
+            List<GNode> asts = Phase1.parse(XtcTestUtils.loadTestFile("src/test/java/inputs/testPackage/Test.java"), 1);
+            List<SymbolTable> tables = Phase1.buildTables(XtcTestUtils.newRuntime(), asts, 1);
+            HashMap<String, ArrayList<Phase1.Initializer>> initializers = Phase1.mangle(XtcTestUtils.newRuntime(), tables, asts, 1);
+
+            // Phase 2 cannot resolve the superclass of B across files, the initializers are resolved without parents
+            Phase4 phase4 = new Phase4(XtcTestUtils.newRuntime(), new HashMap<String, String>(), initializers);
+            List<String> result = new ArrayList<String>();
+            for (Node lowered : phase4.runNodes(asts, tables, threads)) result.add(lowered.toString() + lowered.getProperty("RuntimeInfo"));
+            for (PrimitiveArray array : phase4.primitiveArrays) result.add(array.javaType);
+
+            if (expected == null) expected = result;
+            else assertEquals("Lowered ASTs with " + threads + " threads", expected, result);
+        }
+    }
+
+    // a child resolves on top of the resolved initializers of its parent, overriding by name and type
+    @Test
+    public void testResolveInitializers() {
+        HashMap<String, String> parents = new HashMap<String, String>();
+        parents.put("A", "");
+        parents.put("B", "A");
+        parents.put("C", "B");
+
+        HashMap<String, ArrayList<Phase1.Initializer>> initializers = new HashMap<String, ArrayList<Phase1.Initializer>>();
+        initializers.put("A", new ArrayList<Phase1.Initializer>(Arrays.asList(
+                new Phase1.Initializer("x", false, "int", "1"), new Phase1.Initializer("s", true, "int", "3"))));
+        initializers.put("B", new ArrayList<Phase1.Initializer>(Arrays.asList(
+                new Phase1.Initializer("x", false, "int", "2"), new Phase1.Initializer("y", false, "int", "4"),
+                new Phase1.Initializer("t", true, "int", "5"))));
+        initializers.put("C", new ArrayList<Phase1.Initializer>(Arrays.asList(
+                new Phase1.Initializer("x", false, "double", "6"), new Phase1.Initializer("y", false, "int", "7"))));
+
+        new Phase4(runtime, parents, initializers);
+
+        assertEquals("[x=1, s=3]", describe(initializers.get("A")));
+        assertEquals("[x=2, s=3, y=4]", describe(initializers.get("B")));
+        assertEquals("[x=2, s=3, y=7, x=6]", describe(initializers.get("C")));
+    }
+
+    private static String describe(List<Phase1.Initializer> initializers) {
+        List<String> names = new ArrayList<String>();
+        for (Phase1.Initializer initializer : initializers) names.add(initializer.name + "=" + initializer.value);
+        return names.toString();
+    }
 }
@@ -2,6 +2,10 @@ package edu.nyu.oop;
 
 import java.io.*;
 
+import edu.nyu.oop.util.DirectorySink;
+import edu.nyu.oop.util.MemorySink;
+import edu.nyu.oop.util.NodeUtil;
+import edu.nyu.oop.util.OutputFile;
 import edu.nyu.oop.util.RecursiveVisitor;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -10,11 +14,14 @@ import org.slf4j.Logger;
 import scala.collection.immutable.Stream;
 import xtc.tree.GNode;
 import xtc.tree.Node;
+import xtc.tree.Printer;
 import xtc.util.Runtime;
 
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import static org.junit.Assert.*;
 
 
@@ -43,4 +50,103 @@ public class Phase5Test {
 //        assertTrue("Head of File", printer.headoffile.equals("#include \"output.h\"\n#include <iostream>\n\nusing namespace java::lang;"));
 
     }
-}
\ No newline at end of file
+
+    // code reaches the sink once, on close, flushes of the printer do not reach it
+    @Test
+    public void testOutputFile() throws IOException {
+        MemorySink sink = new MemorySink();
+        OutputFile output = new OutputFile(sink, "output.cpp");
+        Printer printer = new Printer(output);
+
+        printer.p("int32_t").p(' ').p("x").flush();
+        printer.p(" = 0; // \u00e9t\u00e9").pln().flush();
+        assertTrue(sink.getFiles().isEmpty());
+        assertEquals(0, output.getWrites());
+
+        output.close();
+        output.close();
+        String expected = "int32_t x = 0; // \u00e9t\u00e9" + System.getProperty("line.separator");
+        assertEquals(1, output.getWrites());
+        assertTrue(output.isWritten());
+        assertArrayEquals(expected.getBytes("UTF-8"), sink.getFiles().get("output.cpp"));
+        assertEquals(expected.length(), output.getChars());
+        assertEquals(expected.getBytes("UTF-8").length, output.getBytes());
+
+        // the same contents again are handed to the sink, which keeps what it has
+        OutputFile again = new OutputFile(sink, "output.cpp");
+        again.write(expected);
+        again.close();
+        assertEquals(1, again.getWrites());
+        assertFalse(again.isWritten());
+    }
+
+    // in sharded mode every class gets a header and a source file of its own, the Makefile lists the sources
+    @Test
+    public void testSharded() throws IOException {
+        MemorySink sink = new MemorySink();
+        TranslationSession session = new TranslationSession(XtcTestUtils.newRuntime(),
+                NodeUtil.parseJavaFile(new File("src/test/java/inputs/test025/Test025.java")));
+        session.setSharded(true);
+        session.translate(sink);
+
+        Map<String, byte[]> files = sink.getFiles();
+        String header = new String(files.get("output.h"), "UTF-8");
+        String makefile = new String(files.get(Makefile.FILE_NAME), "UTF-8");
+        assertTrue(files.containsKey("forward.h"));
+        assertTrue(files.containsKey("main.cpp"));
+        for (String name : new String[] {"A", "B", "Test025"}) {
+            String qualified = "inputs.test025." + name;
+            assertTrue(header.contains("#include \"" + qualified + ".h\""));
+            assertTrue(new String(files.get(qualified + ".h"), "UTF-8").contains("struct __" + name + " {"));
+            assertTrue(new String(files.get(qualified + ".cpp"), "UTF-8").contains("__" + name + "::__class()"));
+            assertTrue(makefile.contains(qualified + ".cpp"));
+        }
+        assertTrue(header.indexOf("inputs.test025.A.h") < header.indexOf("inputs.test025.B.h"));
+        assertFalse(new String(files.get("output.cpp"), "UTF-8").contains("__class()"));
+    }
+
+    // an unchanged rerun prints again every file recorded in the manifest that was deleted since
+    @Test
+    public void testRerunRestoresDeletedFiles() throws IOException {
+        File directory = Files.createTempDirectory("rerun").toFile();
+        File source = new File("src/test/java/inputs/test025/Test025.java");
+        String[] deleted = {"main.cpp", "forward.h", "inputs.test025.A.h", "inputs.test025.B.cpp", Makefile.FILE_NAME};
+
+        TranslationSession first = new TranslationSession(XtcTestUtils.newRuntime(), NodeUtil.parseJavaFile(source));
+        first.setSharded(true);
+        first.translate(new DirectorySink(directory));
+
+        List<byte[]> contents = new ArrayList<byte[]>();
+        for (String name : deleted) {
+            File file = new File(directory, name);
+            contents.add(Files.readAllBytes(file.toPath()));
+            assertTrue(file.delete());
+        }
+
+        TranslationSession second = new TranslationSession(XtcTestUtils.newRuntime(), NodeUtil.parseJavaFile(source));
+        second.setSharded(true);
+        assertTrue(second.translate(new DirectorySink(directory)).isEmpty());
+        for (int i = 0; i < deleted.length; i++) {
+            assertArrayEquals(contents.get(i), Files.readAllBytes(new File(directory, deleted[i]).toPath()));
+        }
+    }
+
+    // the translator is stamped by the contents of its classes, touching them does not make a rerun print everything again
+    @Test
+    public void testTranslatorStampIgnoresTimes() throws IOException {
+        File classes = Files.createTempDirectory("classes").toFile();
+        File a = new File(classes, "edu/nyu/oop/A.class");
+        File b = new File(classes, "edu/nyu/oop/util/B.class");
+        assertTrue(b.getParentFile().mkdirs());
+        Files.write(a.toPath(), new byte[] {1, 2, 3});
+        Files.write(b.toPath(), new byte[] {4, 5});
+        String stamp = TranslationManifest.translatorStamp(classes);
+
+        assertTrue(a.setLastModified(a.lastModified() + 60000));
+        assertTrue(b.setLastModified(0));
+        assertEquals(stamp, TranslationManifest.translatorStamp(classes));
+
+        Files.write(b.toPath(), new byte[] {4, 6});
+        assertNotEquals(stamp, TranslationManifest.translatorStamp(classes));
+    }
+}
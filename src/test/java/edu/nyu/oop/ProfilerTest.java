@@ -0,0 +1,72 @@
+package edu.nyu.oop;
+
+import edu.nyu.oop.util.Profiler;
+import org.junit.After;
+import org.junit.Test;
+import xtc.tree.GNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProfilerTest {
+
+    @After
+    public void tearDown() {
+        Profiler.setCurrent(null);
+    }
+
+    @Test
+    public void testSamplesWithoutProfilerAreDropped() {
+        Profiler.setCurrent(null);
+        Profiler.start("parse", "A.java").stop();
+        assertNull(Profiler.current());
+    }
+
+    @Test
+    public void testSamplesAndTotals() {
+        Profiler profiler = new Profiler();
+        Profiler.setCurrent(profiler);
+
+        Profiler.start("parse", "A.java").stop();
+        Profiler.start("parse", "B.java").stop();
+        Profiler.start("Phase2.runPhase2", "A.java").stop();
+
+        List<Profiler.Sample> samples = profiler.getSamples();
+        assertEquals(3, samples.size());
+        assertEquals("B.java", samples.get(1).file);
+        assertTrue(samples.get(0).wallNanos >= 0);
+
+        List<Profiler.Sample> totals = profiler.getTotals();
+        assertEquals(2, totals.size());
+        assertEquals("parse", totals.get(0).phase);
+        assertEquals(samples.get(0).wallNanos + samples.get(1).wallNanos, totals.get(0).wallNanos);
+    }
+
+    @Test
+    public void testProfiledTranslation() {
+        Profiler profiler = new Profiler();
+        Profiler.setCurrent(profiler);
+
+        TranslationSession session = new TranslationSession(XtcTestUtils.newRuntime(),
+                XtcTestUtils.loadTestFile("src/test/java/inputs/test001/Test001.java"));
+        session.getLoweredAsts();
+
+        boolean phase2 = false, phase4 = false;
+        List<String> declarations = new ArrayList<String>(), mangled = new ArrayList<String>();
+        for (Profiler.Sample sample : profiler.getSamples()) {
+            if (sample.phase.equals("Phase2.runPhase2")) phase2 = true;
+            if (sample.phase.equals("Phase4.runNode")) phase4 = true;
+            if (sample.phase.equals("Phase1.declarations")) declarations.add(sample.file);
+            if (sample.phase.equals("Phase1.mangle")) mangled.add(sample.file);
+        }
+        assertTrue(phase2 && phase4);
+
+        // both mangling passes are charged to the file they worked on
+        List<String> files = new ArrayList<String>();
+        for (GNode ast : session.getJavaAsts()) files.add(ast.getLocation().file);
+        assertEquals(files, declarations);
+        assertEquals(files, mangled);
+    }
+}
@@ -0,0 +1,55 @@
+package edu.nyu.oop;
+
+import edu.nyu.oop.util.SourceIndex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SourceIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFirstRootWins() throws IOException {
+        File first = folder.newFolder("first", "a");
+        File second = folder.newFolder("second", "a");
+        new File(second, "B.java").createNewFile();
+        new File(second, "C.java").createNewFile();
+        new File(first, "notes.txt").createNewFile();
+
+        SourceIndex index = new SourceIndex(Arrays.asList(first.getParent(), second.getParent()));
+
+        assertEquals(new File(second, "B.java"), index.findFile("a" + File.separator + "B.java"));
+        assertNull(index.findFile("a" + File.separator + "D.java"));
+        assertEquals(2, index.findPackage("a").size());
+
+        new File(first, "B.java").createNewFile();
+        first.setLastModified(first.lastModified() + 2000);
+        // the change is only seen by the next run
+        assertEquals(new File(second, "B.java"), index.findFile("a" + File.separator + "B.java"));
+
+        index.newRun();
+        assertEquals(new File(first, "B.java"), index.findFile("a" + File.separator + "B.java"));
+        List<File> files = index.findPackage("a");
+        assertEquals(1, files.size());
+        assertEquals(new File(first, "B.java"), files.get(0));
+    }
+
+    // files of a package come sorted by name, whatever order the directory lists them in
+    @Test
+    public void testPackageSortedByName() throws IOException {
+        File a = folder.newFolder("root", "a");
+        for (String name : new String[] {"Zeta.java", "Alpha.java", "Mid.java", "Beta.java"}) new File(a, name).createNewFile();
+
+        List<File> files = new SourceIndex(Arrays.asList(a.getParent())).findPackage("a");
+        assertEquals(Arrays.asList(new File(a, "Alpha.java"), new File(a, "Beta.java"), new File(a, "Mid.java"), new File(a, "Zeta.java")), files);
+    }
+}
@@ -0,0 +1,39 @@
+package edu.nyu.oop;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+public class TranslationServerTest {
+    private static Logger logger = org.slf4j.LoggerFactory.getLogger(TranslationServerTest.class);
+
+    // the same input twice in one JVM, the second run must not see leftovers of the first
+    @Test
+    public void testServeTwice() {
+        logger.debug("Executing TranslationServerTest");
+        String command = "-printPhase4 src/test/java/inputs/test010/Test010.java\n";
+        ByteArrayInputStream in = new ByteArrayInputStream((command + command + "\nquit\n").getBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new TranslationServer(in, new PrintStream(out)).serve();
+
+        String[] lines = out.toString().trim().split("\n");
+        assertEquals("One status line per command", 2, lines.length);
+        for (String line : lines) assertTrue(line, line.startsWith(TranslationServer.DONE + " ok "));
+    }
+
+    @Test
+    public void testMissingFile() {
+        ByteArrayInputStream in = new ByteArrayInputStream("-printPhase1 src/test/java/inputs/none.java\n".getBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new TranslationServer(in, new PrintStream(out)).serve();
+
+        assertTrue(out.toString(), out.toString().startsWith(TranslationServer.DONE + " error "));
+    }
+}